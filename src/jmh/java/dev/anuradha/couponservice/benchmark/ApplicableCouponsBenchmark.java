@@ -0,0 +1,83 @@
+package dev.anuradha.couponservice.benchmark;
+
+import dev.anuradha.couponservice.catalog.CouponCatalog;
+import dev.anuradha.couponservice.dto.ApplicableCouponDto;
+import dev.anuradha.couponservice.dto.CartDto;
+import dev.anuradha.couponservice.model.Coupon;
+import dev.anuradha.couponservice.repositories.CouponRepository;
+import dev.anuradha.couponservice.rule.RuleCache;
+import dev.anuradha.couponservice.rule.RuleCompiler;
+import dev.anuradha.couponservice.service.CouponService;
+import dev.anuradha.couponservice.service.EvaluationEngine;
+import dev.anuradha.couponservice.service.MoneyMode;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CouponService#applicableCouponsForCart} end to end over an in-memory repository.
+ * Cycles through a fixed set of carts so results aren't dominated by one lucky cart.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ApplicableCouponsBenchmark {
+
+    private static final int CARTS = 64;
+
+    @Param({"1000", "10000", "100000"})
+    int catalogSize;
+
+    @Param({"5", "20"})
+    int cartSize;
+
+    // CART:PRODUCT:BXGY weights
+    @Param({"20:60:20", "100:0:0", "0:50:50"})
+    String mix;
+
+    @Param({"BIG_DECIMAL"})
+    MoneyMode moneyMode;
+
+    @Param({"EVALUATORS", "COLUMNAR"})
+    EvaluationEngine engine;
+
+    private CouponService service;
+    private CartDto[] carts;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        CouponRepository repo = InMemoryCouponRepository.create();
+        for (Coupon coupon : BenchmarkData.catalog(catalogSize, mix, 11)) {
+            repo.save(coupon);
+        }
+        RuleCompiler compiler = new RuleCompiler(BenchmarkData.MAPPER);
+        RuleCache ruleCache = new RuleCache(compiler, BenchmarkData.METRICS);
+        CouponCatalog catalog = new CouponCatalog(repo, ruleCache);
+        catalog.refresh();
+        service = BenchmarkData.service(repo, catalog, compiler, ruleCache, moneyMode);
+        ReflectionTestUtils.setField(service, "engine", engine);
+
+        Random random = new Random(13);
+        carts = new CartDto[CARTS];
+        for (int i = 0; i < CARTS; i++) {
+            carts[i] = BenchmarkData.cart(cartSize, random);
+        }
+    }
+
+    @Benchmark
+    public List<ApplicableCouponDto> applicableCoupons(Cursor cursor) {
+        CartDto cart = carts[cursor.next++ & (CARTS - 1)];
+        return service.applicableCouponsForCart(cart);
+    }
+}
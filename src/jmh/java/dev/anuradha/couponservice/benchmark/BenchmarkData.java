@@ -0,0 +1,134 @@
+package dev.anuradha.couponservice.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.anuradha.couponservice.catalog.CouponCatalog;
+import dev.anuradha.couponservice.dto.BxGyDetailsDto;
+import dev.anuradha.couponservice.dto.CartDto;
+import dev.anuradha.couponservice.dto.CartItemDto;
+import dev.anuradha.couponservice.dto.CartWiseDetailsDto;
+import dev.anuradha.couponservice.dto.ProductWiseDetailsDto;
+import dev.anuradha.couponservice.metrics.CouponMetrics;
+import dev.anuradha.couponservice.model.Coupon;
+import dev.anuradha.couponservice.model.CouponType;
+import dev.anuradha.couponservice.repositories.CouponRepository;
+import dev.anuradha.couponservice.rule.RuleCache;
+import dev.anuradha.couponservice.rule.RuleCompiler;
+import dev.anuradha.couponservice.service.ApplicableCouponsCache;
+import dev.anuradha.couponservice.service.BxGyEvaluator;
+import dev.anuradha.couponservice.service.CartWiseEvaluator;
+import dev.anuradha.couponservice.service.CouponChangeLog;
+import dev.anuradha.couponservice.service.CouponCodeIndex;
+import dev.anuradha.couponservice.service.CouponService;
+import dev.anuradha.couponservice.service.Evaluator;
+import dev.anuradha.couponservice.service.MoneyMode;
+import dev.anuradha.couponservice.service.ProductWiseEvaluator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Deterministic catalogs and carts shared by the benchmarks.
+ */
+final class BenchmarkData {
+
+    static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // recorded like in the application, so the benchmarks include the metering cost
+    static final CouponMetrics METRICS = new CouponMetrics(new SimpleMeterRegistry());
+
+    // products carts and coupons are drawn from; small enough that indexed coupons do get hit
+    static final int PRODUCT_SPACE = 1_000;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Service wired like the application context, over the given repository. The result cache is off so
+     * the benchmarks measure evaluation rather than cache hits.
+     */
+    static CouponService service(CouponRepository repo, CouponCatalog catalog, RuleCompiler compiler,
+                                 RuleCache ruleCache, MoneyMode moneyMode) {
+        CouponCodeIndex codes = new CouponCodeIndex(repo, null, 1000);
+        CouponService service = new CouponService(evaluators(), repo, InMemoryCouponRepository.targets(), MAPPER,
+                compiler, ruleCache, catalog, ForkJoinPool.commonPool(), METRICS, ApplicableCouponsCache.disabled(),
+                new CouponChangeLog(InMemoryCouponRepository.changes(), repo, catalog, METRICS, codes, null),
+                codes);
+        ReflectionTestUtils.setField(service, "moneyMode", moneyMode);
+        return service;
+    }
+
+    static Map<CouponType, Evaluator> evaluators() {
+        Map<CouponType, Evaluator> map = new EnumMap<>(CouponType.class);
+        map.put(CouponType.CART, new CartWiseEvaluator());
+        map.put(CouponType.PRODUCT, new ProductWiseEvaluator());
+        map.put(CouponType.BXGY, new BxGyEvaluator());
+        return map;
+    }
+
+    /**
+     * {@code size} coupons split by the "CART:PRODUCT:BXGY" weights in {@code mix}, e.g. "20:60:20".
+     */
+    static List<Coupon> catalog(int size, String mix, long seed) {
+        String[] parts = mix.split(":");
+        int cart = Integer.parseInt(parts[0]);
+        int product = Integer.parseInt(parts[1]);
+        int bxgy = Integer.parseInt(parts[2]);
+        int total = cart + product + bxgy;
+
+        Random random = new Random(seed);
+        List<Coupon> coupons = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int pick = random.nextInt(total);
+            CouponType type = pick < cart ? CouponType.CART : pick < cart + product ? CouponType.PRODUCT : CouponType.BXGY;
+            Coupon c = new Coupon();
+            c.setCode("BENCH" + i);
+            c.setType(type);
+            c.setDetails(details(type, random));
+            c.setVersion(0L);
+            coupons.add(c);
+        }
+        return coupons;
+    }
+
+    static CartDto cart(int lines, Random random) {
+        List<CartItemDto> items = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            items.add(new CartItemDto(product(random), 1 + random.nextInt(5),
+                    BigDecimal.valueOf(100 + random.nextInt(50_000), 2), null));
+        }
+        return new CartDto(items);
+    }
+
+    private static String details(CouponType type, Random random) {
+        try {
+            return switch (type) {
+                case CART -> MAPPER.writeValueAsString(new CartWiseDetailsDto(
+                        BigDecimal.valueOf(random.nextInt(2_000)),
+                        random.nextBoolean() ? "PERCENT" : "FLAT",
+                        BigDecimal.valueOf(1 + random.nextInt(30))));
+                case PRODUCT -> MAPPER.writeValueAsString(new ProductWiseDetailsDto(
+                        product(random),
+                        random.nextBoolean() ? "PERCENT" : "FLAT",
+                        BigDecimal.valueOf(1 + random.nextInt(30))));
+                case BXGY -> MAPPER.writeValueAsString(new BxGyDetailsDto(
+                        List.of(new BxGyDetailsDto.BuyProduct(product(random), 1 + random.nextInt(3))),
+                        List.of(new BxGyDetailsDto.GetProduct(product(random), 1)),
+                        1 + random.nextInt(3)));
+            };
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long product(Random random) {
+        return 1 + random.nextInt(PRODUCT_SPACE);
+    }
+}
@@ -0,0 +1,92 @@
+package dev.anuradha.couponservice.benchmark;
+
+import dev.anuradha.couponservice.dto.CartDto;
+import dev.anuradha.couponservice.dto.CartItemDto;
+import dev.anuradha.couponservice.model.CouponType;
+import dev.anuradha.couponservice.rule.BxGyRule;
+import dev.anuradha.couponservice.rule.CartRule;
+import dev.anuradha.couponservice.rule.CouponRule;
+import dev.anuradha.couponservice.rule.ProductRule;
+import dev.anuradha.couponservice.service.CartContext;
+import dev.anuradha.couponservice.service.Evaluator;
+import dev.anuradha.couponservice.service.MoneyMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One coupon of each type against one cart. evaluate* runs on a shared CartContext (as the
+ * applicable-coupons loop does); apply* goes through the CartDto entry point.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EvaluatorBenchmark {
+
+    @Param({"5", "20", "100"})
+    int cartSize;
+
+    @Param({"BIG_DECIMAL", "FIXED_POINT"})
+    MoneyMode moneyMode;
+
+    private final Map<CouponType, Evaluator> evaluators = BenchmarkData.evaluators();
+    private CartDto cart;
+    private CartContext context;
+    private CouponRule cartRule;
+    private CouponRule productRule;
+    private CouponRule bxGyRule;
+
+    @Setup
+    public void setUp() {
+        cart = BenchmarkData.cart(cartSize, new Random(7));
+        context = CartContext.of(cart, moneyMode);
+        List<CartItemDto> items = cart.getItems();
+        // rules that match the cart, so the full discount path is measured
+        cartRule = new CartRule(BigDecimal.ONE, true, BigDecimal.TEN);
+        productRule = new ProductRule(items.get(0).getProductId(), true, BigDecimal.TEN);
+        bxGyRule = new BxGyRule(
+                List.of(new BxGyRule.Line(items.get(0).getProductId(), 1)),
+                List.of(new BxGyRule.Line(items.get(items.size() - 1).getProductId(), 1)),
+                3);
+    }
+
+    @Benchmark
+    public BigDecimal cartEvaluate() {
+        return evaluators.get(CouponType.CART).evaluate(cartRule, context);
+    }
+
+    @Benchmark
+    public CartDto cartApply() {
+        evaluators.get(CouponType.CART).apply(cartRule, cart);
+        return cart;
+    }
+
+    @Benchmark
+    public BigDecimal productEvaluate() {
+        return evaluators.get(CouponType.PRODUCT).evaluate(productRule, context);
+    }
+
+    @Benchmark
+    public CartDto productApply() {
+        evaluators.get(CouponType.PRODUCT).apply(productRule, cart);
+        return cart;
+    }
+
+    @Benchmark
+    public BigDecimal bxGyEvaluate() {
+        return evaluators.get(CouponType.BXGY).evaluate(bxGyRule, context);
+    }
+
+    @Benchmark
+    public CartDto bxGyApply() {
+        evaluators.get(CouponType.BXGY).apply(bxGyRule, cart);
+        return cart;
+    }
+}
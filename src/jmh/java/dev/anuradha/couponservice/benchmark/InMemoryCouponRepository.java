@@ -0,0 +1,78 @@
+package dev.anuradha.couponservice.benchmark;
+
+import dev.anuradha.couponservice.model.Coupon;
+import dev.anuradha.couponservice.repositories.CouponChangeRepository;
+import dev.anuradha.couponservice.repositories.CouponRepository;
+import dev.anuradha.couponservice.repositories.CouponTargetRepository;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Map-backed stand-in for {@link CouponRepository}, so benchmarks measure the engine and not H2.
+ * Only the methods the evaluation and CRUD paths use are implemented.
+ */
+final class InMemoryCouponRepository implements InvocationHandler {
+
+    private final Map<String, Coupon> rows = new LinkedHashMap<>();
+
+    static CouponRepository create() {
+        return (CouponRepository) Proxy.newProxyInstance(CouponRepository.class.getClassLoader(),
+                new Class<?>[]{CouponRepository.class}, new InMemoryCouponRepository());
+    }
+
+    // the catalog does the pruning in the benchmarks, so target rows are accepted and dropped
+    static CouponTargetRepository targets() {
+        return (CouponTargetRepository) Proxy.newProxyInstance(CouponTargetRepository.class.getClassLoader(),
+                new Class<?>[]{CouponTargetRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "saveAll" -> args[0];
+                    case "deleteByCouponId" -> 0;
+                    case "findByCouponId" -> List.of();
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "InMemoryCouponTargetRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    // single node: nobody reads the change log, so rows are accepted and dropped
+    static CouponChangeRepository changes() {
+        return (CouponChangeRepository) Proxy.newProxyInstance(CouponChangeRepository.class.getClassLoader(),
+                new Class<?>[]{CouponChangeRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "save" -> args[0];
+                    case "maxSeqBefore" -> 0L;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "InMemoryCouponChangeRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        return switch (method.getName()) {
+            case "findAll" -> new ArrayList<>(rows.values());
+            case "findById" -> Optional.ofNullable(rows.get((String) args[0]));
+            case "findByCode" -> rows.values().stream().filter(c -> c.getCode().equals(args[0])).findFirst();
+            case "save", "saveAndFlush" -> save((Coupon) args[0]);
+            case "deleteById" -> rows.remove((String) args[0]);
+            case "count" -> (long) rows.size();
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "equals" -> proxy == args[0];
+            case "toString" -> "InMemoryCouponRepository(" + rows.size() + ")";
+            default -> throw new UnsupportedOperationException(method.getName());
+        };
+    }
+
+    private Coupon save(Coupon coupon) {
+        coupon.setVersion(coupon.getVersion() == null ? 0L : coupon.getVersion() + 1);
+        rows.put(coupon.getId(), coupon);
+        return coupon;
+    }
+}
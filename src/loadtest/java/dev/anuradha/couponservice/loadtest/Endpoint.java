@@ -0,0 +1,31 @@
+package dev.anuradha.couponservice.loadtest;
+
+/**
+ * Endpoints the load test drives, with their default share of the traffic.
+ * Listing reads the whole table, so it is off unless asked for.
+ */
+enum Endpoint {
+    APPLICABLE_COUPONS("applicable-coupons", 60),
+    APPLY_COUPON("apply-coupon", 20),
+    COUPONS_GET("coupons-get", 10),
+    COUPONS_CREATE("coupons-create", 4),
+    COUPONS_UPDATE("coupons-update", 4),
+    COUPONS_DELETE("coupons-delete", 2),
+    COUPONS_LIST("coupons-list", 0);
+
+    private final String key;
+    private final int defaultWeight;
+
+    Endpoint(String key, int defaultWeight) {
+        this.key = key;
+        this.defaultWeight = defaultWeight;
+    }
+
+    String key() {
+        return key;
+    }
+
+    int defaultWeight() {
+        return defaultWeight;
+    }
+}
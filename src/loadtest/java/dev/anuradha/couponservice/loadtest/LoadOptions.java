@@ -0,0 +1,61 @@
+package dev.anuradha.couponservice.loadtest;
+
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Load test settings, parsed from {@code key=value} arguments. Endpoint weights are given as
+ * {@code weight.<endpoint>=n}, e.g. {@code weight.coupons-list=1}.
+ */
+record LoadOptions(double rate,
+                   int durationSeconds,
+                   int warmupSeconds,
+                   int catalogSize,
+                   String mix,
+                   int cartSize,
+                   long seed,
+                   Map<Endpoint, Integer> weights,
+                   Path report) {
+
+    static LoadOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) throw new IllegalArgumentException("expected key=value, got: " + arg);
+            values.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+
+        Map<Endpoint, Integer> weights = new EnumMap<>(Endpoint.class);
+        for (Endpoint endpoint : Endpoint.values()) {
+            weights.put(endpoint, Integer.parseInt(take(values, "weight." + endpoint.key(),
+                    String.valueOf(endpoint.defaultWeight()))));
+        }
+
+        LoadOptions options = new LoadOptions(
+                Double.parseDouble(take(values, "rate", "200")),
+                Integer.parseInt(take(values, "duration", "30")),
+                Integer.parseInt(take(values, "warmup", "10")),
+                Integer.parseInt(take(values, "catalog", "1000")),
+                take(values, "mix", "20:60:20"),
+                Integer.parseInt(take(values, "cart", "5")),
+                Long.parseLong(take(values, "seed", "42")),
+                weights,
+                Path.of(take(values, "report", "target/loadtest-report.json")));
+
+        if (!values.isEmpty()) throw new IllegalArgumentException("unknown options: " + values.keySet());
+        if (options.rate <= 0) throw new IllegalArgumentException("rate must be > 0");
+        if (options.durationSeconds <= 0) throw new IllegalArgumentException("duration must be > 0");
+        if (options.catalogSize <= 0) throw new IllegalArgumentException("catalog must be > 0");
+        if (weights.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+            throw new IllegalArgumentException("at least one endpoint needs a positive weight");
+        }
+        return options;
+    }
+
+    private static String take(Map<String, String> values, String key, String defaultValue) {
+        String value = values.remove(key);
+        return value == null ? defaultValue : value;
+    }
+}
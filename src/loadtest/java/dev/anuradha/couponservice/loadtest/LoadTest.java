@@ -0,0 +1,124 @@
+package dev.anuradha.couponservice.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import dev.anuradha.couponservice.CouponServiceApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Boots the application on an in-memory H2 database and a random port, seeds the catalog through
+ * {@code POST /api/coupons}, drives mixed open-model traffic and writes p50/p90/p99/p999 latency and
+ * throughput per endpoint as JSON. Everything runs in this JVM; nothing external is needed.
+ *
+ * <pre>
+ * ./mvnw -Ploadtest test-compile exec:exec -Dloadtest.args="rate=500 duration=60 catalog=10000"
+ * </pre>
+ *
+ * Options: rate (requests/s), duration and warmup (seconds), catalog (seeded coupons), mix
+ * (CART:PRODUCT:BXGY weights of seeded coupons), cart (lines per cart), seed, report (output path)
+ * and weight.&lt;endpoint&gt; for the traffic mix, see {@link Endpoint}.
+ */
+public final class LoadTest {
+
+    private static final int SEED_CONCURRENCY = 32;
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options = LoadOptions.parse(args);
+
+        ConfigurableApplicationContext app = new SpringApplicationBuilder(CouponServiceApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.jpa.show-sql=false",
+                        "logging.level.root=WARN")
+                .run();
+        try {
+            int port = app.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            Map<String, Object> report = run(URI.create("http://localhost:" + port), options);
+
+            ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+            String json = mapper.writeValueAsString(report);
+            if (options.report().getParent() != null) Files.createDirectories(options.report().getParent());
+            Files.writeString(options.report(), json);
+            System.out.println(json);
+            System.out.println("load test report written to " + options.report().toAbsolutePath());
+        } finally {
+            app.close();
+        }
+    }
+
+    private static Map<String, Object> run(URI base, LoadOptions options) throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        Traffic traffic = new Traffic(base, options.cartSize());
+        Random random = new Random(options.seed());
+
+        seed(client, traffic, options, random);
+
+        Map<Endpoint, LatencyStats> stats = new EnumMap<>(Endpoint.class);
+        for (Endpoint endpoint : Endpoint.values()) stats.put(endpoint, new LatencyStats());
+
+        OpenLoopDriver driver = new OpenLoopDriver(client, traffic, options);
+        if (options.warmupSeconds() > 0) {
+            driver.run(options.warmupSeconds(), random, stats);
+            stats.values().forEach(LatencyStats::reset);
+        }
+        long issued = driver.run(options.durationSeconds(), random, stats);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("timestamp", Instant.now().toString());
+        report.put("targetRatePerSec", options.rate());
+        report.put("achievedRatePerSec", (double) issued / options.durationSeconds());
+        report.put("durationSec", options.durationSeconds());
+        report.put("warmupSec", options.warmupSeconds());
+        report.put("catalogSize", traffic.seededCount());
+        report.put("catalogMix", options.mix());
+        report.put("cartSize", options.cartSize());
+        report.put("seed", options.seed());
+
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        for (Map.Entry<Endpoint, LatencyStats> e : stats.entrySet()) {
+            if (options.weights().get(e.getKey()) > 0 || e.getKey() == Endpoint.COUPONS_CREATE) {
+                endpoints.put(e.getKey().key(), e.getValue().summary(options.durationSeconds()));
+            }
+        }
+        report.put("endpoints", endpoints);
+        return report;
+    }
+
+    // seeding is not measured; a bounded number of creates in flight keeps it quick without flooding H2
+    private static void seed(HttpClient client, Traffic traffic, LoadOptions options, Random random) throws Exception {
+        Semaphore permits = new Semaphore(SEED_CONCURRENCY);
+        List<CompletableFuture<HttpResponse<String>>> pending = new ArrayList<>(options.catalogSize());
+        for (int i = 0; i < options.catalogSize(); i++) {
+            permits.acquire();
+            pending.add(client.sendAsync(traffic.createCoupon(options.mix(), random), HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((response, error) -> permits.release()));
+        }
+        for (CompletableFuture<HttpResponse<String>> future : pending) {
+            HttpResponse<String> response = future.join();
+            if (response.statusCode() != 201) {
+                throw new IllegalStateException("seeding failed: " + response.statusCode() + " " + response.body());
+            }
+            traffic.seeded(response);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package dev.anuradha.couponservice.loadtest;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model load: requests arrive as a Poisson process at the target rate, independent of how fast
+ * the server answers. Latency is measured from the scheduled arrival time, not the send time, so a
+ * stalled server or a late scheduler shows up in the percentiles instead of silently lowering the rate.
+ */
+final class OpenLoopDriver {
+
+    private final HttpClient client;
+    private final Traffic traffic;
+    private final LoadOptions options;
+    private final Endpoint[] endpoints = Endpoint.values();
+    private final int[] cumulativeWeights = new int[endpoints.length];
+
+    OpenLoopDriver(HttpClient client, Traffic traffic, LoadOptions options) {
+        this.client = client;
+        this.traffic = traffic;
+        this.options = options;
+        int sum = 0;
+        for (int i = 0; i < endpoints.length; i++) {
+            sum += options.weights().get(endpoints[i]);
+            cumulativeWeights[i] = sum;
+        }
+    }
+
+    /**
+     * Drives traffic for {@code seconds} and waits for the in-flight requests to finish.
+     *
+     * @return requests issued
+     */
+    long run(int seconds, Random random, Map<Endpoint, LatencyStats> stats) throws InterruptedException {
+        AtomicLong inFlight = new AtomicLong();
+        double meanGapNanos = 1_000_000_000.0 / options.rate();
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        long scheduled = start;
+        long issued = 0;
+
+        while (true) {
+            scheduled += (long) (-Math.log(1 - random.nextDouble()) * meanGapNanos);
+            if (scheduled >= end) break;
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+
+            Endpoint endpoint = pick(random);
+            HttpRequest request = traffic.request(endpoint, options.mix(), random);
+            if (request == null) {
+                // nothing to update or delete yet: create instead so the pool fills up
+                endpoint = Endpoint.COUPONS_CREATE;
+                request = traffic.request(endpoint, options.mix(), random);
+            }
+
+            Endpoint sent = endpoint;
+            HttpRequest sentRequest = request;
+            long arrival = scheduled;
+            inFlight.incrementAndGet();
+            client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, error) -> {
+                long latency = System.nanoTime() - arrival;
+                traffic.completed(sent, sentRequest, response);
+                stats.get(sent).record(latency, error == null && response.statusCode() < 400);
+                inFlight.decrementAndGet();
+            });
+            issued++;
+        }
+
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (inFlight.get() > 0) {
+            if (System.nanoTime() > drainDeadline) {
+                System.err.println("load test: " + inFlight.get() + " requests still in flight after 60s");
+                break;
+            }
+            Thread.sleep(10);
+        }
+        return issued;
+    }
+
+    private Endpoint pick(Random random) {
+        int roll = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (roll < cumulativeWeights[i]) return endpoints[i];
+        }
+        throw new IllegalStateException();
+    }
+}
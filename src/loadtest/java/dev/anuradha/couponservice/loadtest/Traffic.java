@@ -0,0 +1,175 @@
+package dev.anuradha.couponservice.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.anuradha.couponservice.dto.BxGyDetailsDto;
+import dev.anuradha.couponservice.dto.CartDto;
+import dev.anuradha.couponservice.dto.CartItemDto;
+import dev.anuradha.couponservice.dto.CartWiseDetailsDto;
+import dev.anuradha.couponservice.dto.CouponRequestDto;
+import dev.anuradha.couponservice.dto.ProductWiseDetailsDto;
+import dev.anuradha.couponservice.dto.UpdateCouponDto;
+import dev.anuradha.couponservice.model.CouponType;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds the requests the load test sends. Seeded coupons are only read; coupons created during the run
+ * go into a scratch pool that updates and deletes draw from, so no two requests race on the same row.
+ */
+final class Traffic {
+
+    // products carts and coupons are drawn from; small enough that indexed coupons do get hit
+    private static final int PRODUCT_SPACE = 1_000;
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+    private final URI base;
+    private final int cartSize;
+    private final List<String> seeded = new ArrayList<>();
+    private final ConcurrentLinkedDeque<String> scratch = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger created = new AtomicInteger();
+
+    Traffic(URI base, int cartSize) {
+        this.base = base;
+        this.cartSize = cartSize;
+    }
+
+    /**
+     * A request to create a coupon of a type picked by the "CART:PRODUCT:BXGY" weights in {@code mix}.
+     */
+    HttpRequest createCoupon(String mix, Random random) {
+        String[] parts = mix.split(":");
+        int cart = Integer.parseInt(parts[0]);
+        int product = Integer.parseInt(parts[1]);
+        int pick = random.nextInt(cart + product + Integer.parseInt(parts[2]));
+        CouponType type = pick < cart ? CouponType.CART : pick < cart + product ? CouponType.PRODUCT : CouponType.BXGY;
+
+        CouponRequestDto body = new CouponRequestDto("LOAD" + created.incrementAndGet(), type,
+                details(type, random), true, null, null, null, null);
+        return json("/api/coupons").POST(body(body)).build();
+    }
+
+    void seeded(HttpResponse<String> response) {
+        seeded.add(idOf(response));
+    }
+
+    int seededCount() {
+        return seeded.size();
+    }
+
+    /**
+     * The request for {@code endpoint}, or null when it has nothing to act on (empty scratch pool).
+     * Must be called from a single thread: it shares {@code random} with the arrival schedule.
+     */
+    HttpRequest request(Endpoint endpoint, String mix, Random random) {
+        return switch (endpoint) {
+            case APPLICABLE_COUPONS -> json("/api/applicable-coupons").POST(body(cart(random))).build();
+            case APPLY_COUPON -> json("/api/apply-coupon/" + seededId(random)).POST(body(cart(random))).build();
+            case COUPONS_GET -> get("/api/coupons/" + seededId(random));
+            case COUPONS_LIST -> get("/api/coupons");
+            case COUPONS_CREATE -> createCoupon(mix, random);
+            case COUPONS_UPDATE -> {
+                String id = scratch.pollFirst();
+                if (id == null) yield null;
+                UpdateCouponDto update = new UpdateCouponDto();
+                update.setActive(random.nextBoolean());
+                yield json("/api/coupons/" + id).PUT(body(update)).build();
+            }
+            case COUPONS_DELETE -> {
+                String id = scratch.pollFirst();
+                yield id == null ? null : HttpRequest.newBuilder(base.resolve("/api/coupons/" + id))
+                        .timeout(TIMEOUT).DELETE().build();
+            }
+        };
+    }
+
+    /**
+     * Book-keeping once a response arrives: created and updated coupons go (back) into the scratch pool.
+     */
+    void completed(Endpoint endpoint, HttpRequest request, HttpResponse<String> response) {
+        if (response == null || response.statusCode() >= 400) return;
+        if (endpoint == Endpoint.COUPONS_CREATE) {
+            scratch.addLast(idOf(response));
+        } else if (endpoint == Endpoint.COUPONS_UPDATE) {
+            String path = request.uri().getPath();
+            scratch.addLast(path.substring(path.lastIndexOf('/') + 1));
+        }
+    }
+
+    private String seededId(Random random) {
+        return seeded.get(random.nextInt(seeded.size()));
+    }
+
+    private CartDto cart(Random random) {
+        List<CartItemDto> items = new ArrayList<>(cartSize);
+        for (int i = 0; i < cartSize; i++) {
+            items.add(new CartItemDto(product(random), 1 + random.nextInt(5),
+                    BigDecimal.valueOf(100 + random.nextInt(50_000), 2), null));
+        }
+        return new CartDto(items);
+    }
+
+    private String details(CouponType type, Random random) {
+        Object details = switch (type) {
+            case CART -> new CartWiseDetailsDto(
+                    BigDecimal.valueOf(random.nextInt(2_000)),
+                    random.nextBoolean() ? "PERCENT" : "FLAT",
+                    BigDecimal.valueOf(1 + random.nextInt(30)));
+            case PRODUCT -> new ProductWiseDetailsDto(
+                    product(random),
+                    random.nextBoolean() ? "PERCENT" : "FLAT",
+                    BigDecimal.valueOf(1 + random.nextInt(30)));
+            case BXGY -> new BxGyDetailsDto(
+                    List.of(new BxGyDetailsDto.BuyProduct(product(random), 1 + random.nextInt(3))),
+                    List.of(new BxGyDetailsDto.GetProduct(product(random), 1)),
+                    1 + random.nextInt(3));
+        };
+        return write(details);
+    }
+
+    private static long product(Random random) {
+        return 1 + random.nextInt(PRODUCT_SPACE);
+    }
+
+    private HttpRequest.Builder json(String path) {
+        return HttpRequest.newBuilder(base.resolve(path))
+                .timeout(TIMEOUT)
+                .header("Content-Type", "application/json");
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(base.resolve(path)).timeout(TIMEOUT).GET().build();
+    }
+
+    private HttpRequest.BodyPublisher body(Object value) {
+        return HttpRequest.BodyPublishers.ofString(write(value));
+    }
+
+    private String write(Object value) {
+        try {
+            return mapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String idOf(HttpResponse<String> response) {
+        try {
+            JsonNode node = mapper.readTree(response.body());
+            return node.get("id").asText();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("unexpected create response: " + response.body(), e);
+        }
+    }
+}
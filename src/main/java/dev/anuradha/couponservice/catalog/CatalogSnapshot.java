@@ -0,0 +1,149 @@
+package dev.anuradha.couponservice.catalog;
+
+import dev.anuradha.couponservice.service.CartContext;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One immutable generation of the catalog. Never modified after construction;
+ * writers build a new snapshot and swap it in.
+ */
+public final class CatalogSnapshot {
+
+    public static final CatalogSnapshot EMPTY = new CatalogSnapshot(0, List.of(), null);
+
+    private final long version;
+    private final List<CompiledCoupon> coupons;
+    // first instant at which a coupon here expires or a scheduled one goes live; null if none
+    private final Instant nextTransition;
+    private final Map<String, CompiledCoupon> byId;
+    private final ProductIndex productIndex;
+    private final ThresholdIndex thresholdIndex;
+    // built on first use, only the COLUMNAR engine needs it; a racing second build is harmless
+    private volatile ColumnarRules columnar;
+    // true for the views liveAt derives; they are never published
+    private final boolean view;
+    // the last view liveAt built, reused until one of its coupons expires; a racing second build is harmless
+    private volatile CatalogSnapshot liveView;
+
+    CatalogSnapshot(long version, List<CompiledCoupon> coupons, Instant nextActivation) {
+        this(version, coupons, nextActivation, false);
+    }
+
+    private CatalogSnapshot(long version, List<CompiledCoupon> coupons, Instant nextActivation, boolean view) {
+        this.version = version;
+        this.view = view;
+        this.coupons = Collections.unmodifiableList(coupons);
+        Map<String, CompiledCoupon> index = new HashMap<>(coupons.size() * 2);
+        Instant next = nextActivation;
+        for (CompiledCoupon c : coupons) {
+            index.put(c.id(), c);
+            if (c.expiresAt() != null && (next == null || c.expiresAt().isBefore(next))) next = c.expiresAt();
+        }
+        this.nextTransition = next;
+        this.byId = Collections.unmodifiableMap(index);
+        this.productIndex = new ProductIndex(coupons);
+        this.thresholdIndex = new ThresholdIndex(coupons);
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public int size() {
+        return coupons.size();
+    }
+
+    /**
+     * Whether every coupon here is live at {@code now} and no scheduled one is due yet, i.e. the snapshot
+     * can be evaluated without checking dates coupon by coupon.
+     */
+    public boolean isCurrentAt(Instant now) {
+        return nextTransition == null || now.isBefore(nextTransition);
+    }
+
+    /**
+     * This snapshot without the coupons expired by {@code now}, for readers that find a transition due
+     * before the catalog has applied it. Scheduled coupons whose start has come are not added; they go
+     * live when the catalog advances on its next tick. {@code this} when nothing is due.
+     */
+    public CatalogSnapshot liveAt(Instant now) {
+        if (isCurrentAt(now)) return this;
+        CatalogSnapshot cached = liveView;
+        if (cached != null && cached.isCurrentAt(now)) return cached;
+        List<CompiledCoupon> live = new ArrayList<>(coupons.size());
+        for (CompiledCoupon c : coupons) {
+            if (!c.isExpired(now)) live.add(c);
+        }
+        CatalogSnapshot derived = new CatalogSnapshot(version, live, null, true);
+        liveView = derived;
+        return derived;
+    }
+
+    /**
+     * False for a view from {@link #liveAt}: it shares the version of the snapshot it came from but not
+     * its contents, so nothing may be keyed on that version.
+     */
+    public boolean isPublished() {
+        return !view;
+    }
+
+    // in catalog order, which is the order results are reported in
+    public List<CompiledCoupon> coupons() {
+        return coupons;
+    }
+
+    public CompiledCoupon get(String id) {
+        return byId.get(id);
+    }
+
+    public ColumnarRules columnar() {
+        ColumnarRules rules = columnar;
+        if (rules == null) columnar = rules = new ColumnarRules(coupons);
+        return rules;
+    }
+
+    /**
+     * Positions in {@link #coupons()} worth evaluating for the cart: the CART coupons whose threshold
+     * the cart total reaches plus the PRODUCT/BXGY coupons indexed under one of its products.
+     * Ascending, so catalog order is kept.
+     */
+    public int[] candidates(CartContext cart) {
+        return merge(thresholdIndex.qualifying(cart.total()), productIndex.candidates(cart.productIds()));
+    }
+
+    /**
+     * The qualifying PERCENT coupon with the highest percentage for this cart total, or null.
+     */
+    public CompiledCoupon bestPercentCartCoupon(BigDecimal total) {
+        int position = thresholdIndex.bestPercent(total);
+        return position < 0 ? null : coupons.get(position);
+    }
+
+    /**
+     * The qualifying FLAT coupon with the highest amount for this cart total, or null.
+     */
+    public CompiledCoupon bestFlatCartCoupon(BigDecimal total) {
+        int position = thresholdIndex.bestFlat(total);
+        return position < 0 ? null : coupons.get(position);
+    }
+
+    private static int[] merge(int[] a, int[] b) {
+        if (a.length == 0) return b;
+        if (b.length == 0) return a;
+        int[] out = new int[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            out[n++] = a[i] <= b[j] ? a[i++] : b[j++];
+        }
+        while (i < a.length) out[n++] = a[i++];
+        while (j < b.length) out[n++] = b[j++];
+        return out;
+    }
+}
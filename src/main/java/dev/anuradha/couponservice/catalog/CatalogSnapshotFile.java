@@ -0,0 +1,256 @@
+package dev.anuradha.couponservice.catalog;
+
+import dev.anuradha.couponservice.model.CouponType;
+import dev.anuradha.couponservice.rule.BxGyRule;
+import dev.anuradha.couponservice.rule.CartRule;
+import dev.anuradha.couponservice.rule.CouponRule;
+import dev.anuradha.couponservice.rule.ProductRule;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * The compiled catalog as a binary file, so a node can start from its last full load instead of a
+ * {@code findAll} and a JSON parse per coupon. Rules are stored in their compiled form (no details JSON);
+ * the indexes are rebuilt from them, which is a pass over arrays in memory.
+ * <p>
+ * Layout, big-endian: a header of magic, format version, body length and CRC32 of the body, then the
+ * body: when it was written, the {@code updatedAt} watermark of the load it came from, and the coupons.
+ * A file with another magic or format version, a wrong length or a checksum mismatch is rejected as a
+ * whole. Written to a temporary file and moved into place, so readers never see half a file.
+ */
+final class CatalogSnapshotFile {
+
+    private static final int MAGIC = 0x43504E53; // "CPNS"
+    static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 4 + 8;
+
+    private static final byte CART = 1;
+    private static final byte PRODUCT = 2;
+    private static final byte BXGY = 3;
+
+    /**
+     * What a file holds: every coupon as of {@code watermark} (the newest {@code updatedAt} the load saw),
+     * in catalog order.
+     */
+    record Contents(Instant writtenAt, Instant watermark, List<CompiledCoupon> coupons) {
+    }
+
+    /**
+     * Thrown for a file that can't be used: missing, truncated, corrupt or in another format.
+     */
+    static final class InvalidSnapshotException extends Exception {
+        InvalidSnapshotException(String message) {
+            super(message);
+        }
+    }
+
+    private CatalogSnapshotFile() {
+    }
+
+    static void write(Path path, Contents contents) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + contents.coupons().size() * 128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeInstant(out, contents.writtenAt());
+        writeInstant(out, contents.watermark());
+        out.writeInt(contents.coupons().size());
+        for (CompiledCoupon coupon : contents.coupons()) writeCoupon(out, coupon);
+        out.flush();
+        byte[] body = bytes.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                .putInt(MAGIC).putInt(FORMAT_VERSION).putInt(body.length).putLong(crc.getValue());
+
+        Path dir = path.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ByteBuffer[] buffers = {header.flip(), ByteBuffer.wrap(body)};
+                while (buffers[1].hasRemaining()) channel.write(buffers);
+                channel.force(true);
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Maps the file and decodes it. Nothing is trusted before the checksum over the whole body matched.
+     */
+    static Contents read(Path path) throws IOException, InvalidSnapshotException {
+        if (!Files.isRegularFile(path)) throw new InvalidSnapshotException("no snapshot file at " + path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) throw new InvalidSnapshotException("truncated header");
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            if (buffer.getInt() != MAGIC) throw new InvalidSnapshotException("not a catalog snapshot");
+            int format = buffer.getInt();
+            if (format != FORMAT_VERSION) {
+                throw new InvalidSnapshotException("format version " + format + ", expected " + FORMAT_VERSION);
+            }
+            int length = buffer.getInt();
+            long checksum = buffer.getLong();
+            if (length != size - HEADER_BYTES) throw new InvalidSnapshotException("body length mismatch");
+
+            ByteBuffer body = buffer.slice();
+            CRC32 crc = new CRC32();
+            crc.update(body.duplicate());
+            if (crc.getValue() != checksum) throw new InvalidSnapshotException("checksum mismatch");
+
+            try {
+                Instant writtenAt = readInstant(body);
+                Instant watermark = readInstant(body);
+                int count = body.getInt();
+                List<CompiledCoupon> coupons = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) coupons.add(readCoupon(body));
+                if (body.hasRemaining()) throw new InvalidSnapshotException("trailing bytes");
+                return new Contents(writtenAt, watermark, coupons);
+            } catch (RuntimeException ex) {
+                // a matching checksum over bytes this code didn't write; treat like any other bad file
+                throw new InvalidSnapshotException("undecodable body: " + ex);
+            }
+        }
+    }
+
+    private static void writeCoupon(DataOutputStream out, CompiledCoupon c) throws IOException {
+        writeString(out, c.id());
+        writeString(out, c.code());
+        writeInstant(out, c.startsAt());
+        writeInstant(out, c.expiresAt());
+        writeInstant(out, c.updatedAt());
+        out.writeLong(c.version() == null ? -1 : c.version());
+        writeInt(out, c.maxRedemptions());
+        writeInt(out, c.maxRedemptionsPerCustomer());
+        CouponRule rule = c.rule();
+        if (rule instanceof CartRule r) {
+            out.writeByte(CART);
+            writeDecimal(out, r.threshold());
+            out.writeBoolean(r.percent());
+            writeDecimal(out, r.discountValue());
+        } else if (rule instanceof ProductRule r) {
+            out.writeByte(PRODUCT);
+            out.writeLong(r.productId());
+            out.writeBoolean(r.percent());
+            writeDecimal(out, r.discountValue());
+        } else {
+            BxGyRule r = (BxGyRule) rule;
+            out.writeByte(BXGY);
+            writeLines(out, r.buyProducts());
+            writeLines(out, r.getProducts());
+            writeInt(out, r.repetitionLimit());
+        }
+    }
+
+    private static CompiledCoupon readCoupon(ByteBuffer in) throws InvalidSnapshotException {
+        String id = readString(in);
+        String code = readString(in);
+        Instant startsAt = readInstant(in);
+        Instant expiresAt = readInstant(in);
+        Instant updatedAt = readInstant(in);
+        long version = in.getLong();
+        Integer maxRedemptions = readInt(in);
+        Integer maxPerCustomer = readInt(in);
+        byte kind = in.get();
+        CouponRule rule = switch (kind) {
+            case CART -> new CartRule(readDecimal(in), in.get() != 0, readDecimal(in));
+            case PRODUCT -> new ProductRule(in.getLong(), in.get() != 0, readDecimal(in));
+            case BXGY -> new BxGyRule(readLines(in), readLines(in), readInt(in));
+            default -> throw new InvalidSnapshotException("unknown rule kind " + kind);
+        };
+        CouponType type = rule.type();
+        return new CompiledCoupon(id, code, type, startsAt, expiresAt, version < 0 ? null : version, updatedAt,
+                maxRedemptions, maxPerCustomer, rule);
+    }
+
+    private static void writeLines(DataOutputStream out, List<BxGyRule.Line> lines) throws IOException {
+        out.writeInt(lines.size());
+        for (BxGyRule.Line line : lines) {
+            out.writeLong(line.productId());
+            out.writeInt(line.quantity());
+        }
+    }
+
+    private static List<BxGyRule.Line> readLines(ByteBuffer in) {
+        int n = in.getInt();
+        List<BxGyRule.Line> lines = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) lines.add(new BxGyRule.Line(in.getLong(), in.getInt()));
+        return lines;
+    }
+
+    // null is written as a negative length
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int n = in.getInt();
+        if (n < 0) return null;
+        byte[] utf8 = new byte[n];
+        in.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    // null is written as a negative nano field
+    private static void writeInstant(DataOutputStream out, Instant instant) throws IOException {
+        out.writeLong(instant == null ? 0 : instant.getEpochSecond());
+        out.writeInt(instant == null ? -1 : instant.getNano());
+    }
+
+    private static Instant readInstant(ByteBuffer in) {
+        long seconds = in.getLong();
+        int nanos = in.getInt();
+        return nanos < 0 ? null : Instant.ofEpochSecond(seconds, nanos);
+    }
+
+    private static void writeInt(DataOutputStream out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        out.writeInt(value == null ? 0 : value);
+    }
+
+    private static Integer readInt(ByteBuffer in) {
+        boolean present = in.get() != 0;
+        int value = in.getInt();
+        return present ? value : null;
+    }
+
+    // scale and unscaled two's-complement bytes, so the value comes back with the same scale
+    private static void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        out.writeInt(value.scale());
+        out.writeShort(unscaled.length);
+        out.write(unscaled);
+    }
+
+    private static BigDecimal readDecimal(ByteBuffer in) {
+        int scale = in.getInt();
+        byte[] unscaled = new byte[in.getShort()];
+        in.get(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+}
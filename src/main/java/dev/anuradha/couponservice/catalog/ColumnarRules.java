@@ -0,0 +1,123 @@
+package dev.anuradha.couponservice.catalog;
+
+import dev.anuradha.couponservice.rule.CartRule;
+import dev.anuradha.couponservice.rule.CouponRule;
+import dev.anuradha.couponservice.rule.ProductRule;
+import dev.anuradha.couponservice.service.CartContext;
+import dev.anuradha.couponservice.util.Money;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * The CART and PRODUCT coupons of a snapshot as parallel primitive arrays (struct of arrays), for the
+ * {@code COLUMNAR} evaluation engine. A coupon is one row; evaluating it reads a few longs instead of
+ * dispatching to an {@code Evaluator} and walking its rule. The arithmetic is the evaluators' fixed-point
+ * path, so results are identical in value and scale. Coupons whose values don't fit in micros, and BXGY
+ * coupons, are left to the evaluators.
+ */
+public final class ColumnarRules {
+
+    private static final byte OTHER = 0;
+    private static final byte CART = 1;
+    private static final byte PRODUCT = 2;
+
+    // per catalog position: which columns hold the coupon, and its row there
+    private final byte[] kind;
+    private final int[] row;
+
+    private final long[] thresholdMicros;
+    private final long[] cartValueMicros;
+    private final boolean[] cartPercent;
+    private final BigDecimal[] cartFlat;             // a FLAT cart coupon returns its value as is
+
+    private final long[] productId;
+    private final long[] productValueMicros;
+    private final boolean[] productPercent;
+    private final int[] productFlatScale;            // scale the BigDecimal sum of a FLAT discount ends up with
+
+    ColumnarRules(List<CompiledCoupon> coupons) {
+        int n = coupons.size();
+        kind = new byte[n];
+        row = new int[n];
+        int carts = 0, products = 0;
+        for (int i = 0; i < n; i++) {
+            CouponRule rule = coupons.get(i).rule();
+            if (rule instanceof CartRule c && c.fixedPoint()) {
+                kind[i] = CART;
+                row[i] = carts++;
+            } else if (rule instanceof ProductRule p && p.fixedPoint()) {
+                kind[i] = PRODUCT;
+                row[i] = products++;
+            }
+        }
+
+        thresholdMicros = new long[carts];
+        cartValueMicros = new long[carts];
+        cartPercent = new boolean[carts];
+        cartFlat = new BigDecimal[carts];
+        productId = new long[products];
+        productValueMicros = new long[products];
+        productPercent = new boolean[products];
+        productFlatScale = new int[products];
+        for (int i = 0; i < n; i++) {
+            int r = row[i];
+            if (kind[i] == CART) {
+                CartRule c = (CartRule) coupons.get(i).rule();
+                thresholdMicros[r] = c.thresholdMicros();
+                cartValueMicros[r] = c.discountValueMicros();
+                cartPercent[r] = c.percent();
+                cartFlat[r] = c.discountValue();
+            } else if (kind[i] == PRODUCT) {
+                ProductRule p = (ProductRule) coupons.get(i).rule();
+                productId[r] = p.productId();
+                productValueMicros[r] = p.discountValueMicros();
+                productPercent[r] = p.percent();
+                productFlatScale[r] = Math.max(0, p.discountValue().scale());
+            }
+        }
+    }
+
+    /**
+     * Discount of the coupon at catalog {@code position}, or null when it isn't columnar or the cart has no
+     * fixed-point view, in which case the caller evaluates it with its {@code Evaluator}. Overflow also
+     * gives null, so the evaluator's BigDecimal fallback decides.
+     */
+    public BigDecimal discount(int position, CartContext cart) {
+        if (!cart.fixedPoint()) return null;
+        try {
+            return switch (kind[position]) {
+                case CART -> cartDiscount(row[position], cart.totalMicros());
+                case PRODUCT -> productDiscount(row[position], cart);
+                default -> null;
+            };
+        } catch (ArithmeticException overflow) {
+            return null;
+        }
+    }
+
+    private BigDecimal cartDiscount(int r, long total) {
+        if (total < thresholdMicros[r]) return BigDecimal.ZERO;
+        return cartPercent[r] ? Money.fromMicros(Money.percentOf(total, cartValueMicros[r])) : cartFlat[r];
+    }
+
+    // every cart line is visited; a line of another product contributes zero instead of branching out
+    private BigDecimal productDiscount(int r, CartContext cart) {
+        long target = productId[r];
+        long value = productValueMicros[r];
+        boolean percent = productPercent[r];
+        long discount = 0;
+        int matched = 0;
+        for (int i = 0, lines = cart.lineCount(); i < lines; i++) {
+            long mask = -(cart.lineProductId(i) == target ? 1L : 0L);
+            long line = percent
+                    ? Money.percentOf(cart.lineTotalMicros(i) & mask, value)
+                    : Math.multiplyExact(value, cart.lineQuantity(i) & mask);
+            discount = Math.addExact(discount, line);
+            matched |= (int) mask;
+        }
+        if (matched == 0) return BigDecimal.ZERO;
+        BigDecimal result = Money.fromMicros(discount);
+        return percent ? result : result.setScale(productFlatScale[r]);
+    }
+}
@@ -0,0 +1,36 @@
+package dev.anuradha.couponservice.catalog;
+
+import dev.anuradha.couponservice.model.Coupon;
+import dev.anuradha.couponservice.model.CouponType;
+import dev.anuradha.couponservice.rule.CouponRule;
+
+import java.time.Instant;
+
+/**
+ * Immutable, evaluation-ready view of an active coupon held by the {@link CouponCatalog}.
+ */
+public record CompiledCoupon(String id,
+                             String code,
+                             CouponType type,
+                             Instant startsAt,
+                             Instant expiresAt,
+                             Long version,
+                             Instant updatedAt,
+                             Integer maxRedemptions,
+                             Integer maxRedemptionsPerCustomer,
+                             CouponRule rule) {
+
+    public static CompiledCoupon of(Coupon coupon, CouponRule rule) {
+        return new CompiledCoupon(coupon.getId(), coupon.getCode(), coupon.getType(),
+                coupon.getStartsAt(), coupon.getExpiresAt(), coupon.getVersion(), coupon.getUpdatedAt(),
+                coupon.getMaxRedemptions(), coupon.getMaxRedemptionsPerCustomer(), rule);
+    }
+
+    public boolean isExpired(Instant now) {
+        return expiresAt != null && expiresAt.isBefore(now);
+    }
+
+    public boolean isStarted(Instant now) {
+        return startsAt == null || !startsAt.isAfter(now);
+    }
+}
@@ -0,0 +1,493 @@
+package dev.anuradha.couponservice.catalog;
+
+import dev.anuradha.couponservice.model.Coupon;
+import dev.anuradha.couponservice.repositories.CouponRepository;
+import dev.anuradha.couponservice.rule.CouponRule;
+import dev.anuradha.couponservice.rule.RuleCache;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * In-process copy-on-write catalog of all active coupons.
+ * Reads are a single volatile load of the current {@link CatalogSnapshot}; writes are
+ * serialized and publish a new snapshot, so evaluation never touches the database.
+ * <p>
+ * Only coupons that are live right now are in the snapshot. Coupons with a future {@code startsAt} wait
+ * in {@code scheduled}, and a {@link TimingWheel} holds each coupon's next date (going live or expiring),
+ * so the catalog publishes a new snapshot at those instants and evaluation never has to compare dates per
+ * coupon. Expired coupons are also marked inactive in the database, in batches.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CouponCatalog {
+
+    private final CouponRepository repo;
+    private final RuleCache ruleCache;
+
+    // deadlines only pick the slot; due() compares exact times, so this is about spreading, not precision
+    private static final long WHEEL_TICK_MS = 1000;
+    private static final int WHEEL_SIZE = 512;
+
+    private record Transition(String couponId, Instant at) {
+    }
+
+    private final AtomicReference<CatalogSnapshot> current = new AtomicReference<>(CatalogSnapshot.EMPTY);
+    private final Object writeLock = new Object();
+    // one full load at a time; readers and incremental writes never take it
+    private final Object loadLock = new Object();
+
+    // guarded by writeLock
+    private final Map<String, CompiledCoupon> scheduled = new HashMap<>();
+    private final TimingWheel<Transition> wheel = new TimingWheel<>(WHEEL_TICK_MS, WHEEL_SIZE, Instant.now());
+    // ids written while a full load reads the table, null when none runs; the load keeps their current state
+    private Set<String> writtenDuringLoad;
+    private volatile int scheduledCount;
+
+    // expired coupons still marked active in the database
+    private final Queue<String> toDeactivate = new ConcurrentLinkedQueue<>();
+
+    @Value("${coupon.schedule.deactivate-batch-size:500}")
+    private int deactivateBatchSize = 500;
+
+    // false: start without the full load and leave it to the first scheduled refresh
+    @Value("${coupon.catalog.preload:true}")
+    private boolean preload = true;
+
+    // set by the first full load; before that the snapshot only holds what was written since startup
+    private volatile boolean loaded;
+
+    // compiled catalog written after every full load and read at startup instead of one; empty = off
+    @Value("${coupon.catalog.snapshot-file.path:}")
+    private String snapshotPath = "";
+
+    // an older file is not caught up but replaced by a full load
+    @Value("${coupon.catalog.snapshot-file.max-age-ms:86400000}")
+    private long snapshotMaxAgeMs = 86_400_000;
+
+    // rows updated this long before the file's watermark are read again: clock skew between nodes, and
+    // transactions that committed after the load but stamped updatedAt before it
+    @Value("${coupon.catalog.snapshot-file.catch-up-margin-ms:300000}")
+    private long catchUpMarginMs = 300_000;
+
+    public CatalogSnapshot snapshot() {
+        return current.get();
+    }
+
+    /**
+     * The snapshot as of {@code now}, so the result can be evaluated without any per-coupon date checks.
+     * Costs one comparison when nothing is due. When a transition is due that the catalog hasn't applied
+     * yet, coupons that expired since are filtered out of a view of the current snapshot; applying the
+     * transitions is left to {@link #tick}, so a reader never waits for the write lock (which a full load
+     * can hold) and a scheduled coupon goes live at most one tick late.
+     */
+    public CatalogSnapshot snapshot(Instant now) {
+        return current.get().liveAt(now);
+    }
+
+    public long version() {
+        return current.get().version();
+    }
+
+    public int size() {
+        return current.get().size();
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // coupons waiting for their startsAt
+    public int scheduledCount() {
+        return scheduledCount;
+    }
+
+    /**
+     * Startup load: from the snapshot file when there is a usable one, otherwise from the database
+     * (unless {@code coupon.catalog.preload} is off).
+     */
+    @PostConstruct
+    public void load() {
+        if (loadSnapshotFile()) return;
+        if (preload) refresh();
+    }
+
+    /**
+     * Reloads everything from the database. Runs at startup and periodically as a
+     * safety net for anything the incremental updates missed. Each reload is also written
+     * to the snapshot file, if one is configured.
+     * <p>
+     * The table is read and compiled without the write lock, which is only held to swap the result in.
+     * Coupons written in the meantime keep what the write put in the catalog, since the rows read may
+     * predate it.
+     */
+    @Scheduled(fixedDelayString = "${coupon.catalog.refresh-interval-ms:300000}",
+            initialDelayString = "${coupon.catalog.refresh-interval-ms:300000}")
+    public void refresh() {
+        synchronized (loadLock) {
+            load(repo::findAll);
+        }
+    }
+
+    private void load(Supplier<List<Coupon>> rows) {
+        synchronized (writeLock) {
+            writtenDuringLoad = new HashSet<>();
+        }
+        Instant watermark = Instant.EPOCH;
+        List<CompiledCoupon> loadedCoupons = new ArrayList<>();
+        try {
+            for (Coupon coupon : rows.get()) {
+                if (coupon.getUpdatedAt() != null && coupon.getUpdatedAt().isAfter(watermark)) {
+                    watermark = coupon.getUpdatedAt();
+                }
+                CompiledCoupon compiled = compile(coupon);
+                if (compiled != null) loadedCoupons.add(compiled);
+            }
+        } catch (RuntimeException ex) {
+            synchronized (writeLock) {
+                writtenDuringLoad = null;
+            }
+            throw ex;
+        }
+
+        CatalogSnapshotFile.Contents contents;
+        synchronized (writeLock) {
+            Instant now = Instant.now();
+            Set<String> written = writtenDuringLoad;
+            writtenDuringLoad = null;
+            Map<String, CompiledCoupon> kept = new LinkedHashMap<>();
+            for (String id : written) {
+                CompiledCoupon c = current.get().get(id);
+                if (c == null) c = scheduled.get(id);
+                if (c != null) kept.put(id, c);
+            }
+            scheduled.clear();
+            wheel.clear();
+            List<CompiledCoupon> coupons = new ArrayList<>();
+            for (CompiledCoupon compiled : loadedCoupons) {
+                CompiledCoupon c = written.contains(compiled.id()) ? kept.remove(compiled.id()) : compiled;
+                if (c != null && place(c, now)) coupons.add(c);
+            }
+            // written during the load but committed after the rows were read
+            for (CompiledCoupon c : kept.values()) {
+                if (place(c, now)) coupons.add(c);
+            }
+            publish(coupons);
+            loaded = true;
+            log.info("Coupon catalog refreshed: {} active coupons, {} scheduled, version {}",
+                    coupons.size(), scheduled.size(), version());
+
+            List<CompiledCoupon> all = new ArrayList<>(coupons.size() + scheduled.size());
+            all.addAll(coupons);
+            all.addAll(scheduled.values());
+            contents = new CatalogSnapshotFile.Contents(now, watermark, all);
+        }
+        // outside the lock: writes and evaluation don't wait for the disk
+        writeSnapshotFile(contents);
+    }
+
+    /**
+     * Starts from the snapshot file and catches up with the database: coupons updated since the file's
+     * watermark (minus the margin) are recompiled, and coupons no longer active are dropped. Both are
+     * indexed queries, and only changed coupons have their details parsed. False, with nothing changed,
+     * when the file is missing, corrupt, in another format or older than {@code max-age-ms}.
+     */
+    private boolean loadSnapshotFile() {
+        if (snapshotPath == null || snapshotPath.isBlank()) return false;
+        long started = System.nanoTime();
+        CatalogSnapshotFile.Contents contents;
+        try {
+            contents = CatalogSnapshotFile.read(Path.of(snapshotPath));
+        } catch (IOException | CatalogSnapshotFile.InvalidSnapshotException ex) {
+            log.warn("Catalog snapshot file not used, loading from the database: {}", ex.getMessage());
+            return false;
+        }
+        if (contents.writtenAt().isBefore(Instant.now().minusMillis(snapshotMaxAgeMs))) {
+            log.warn("Catalog snapshot file written at {} is stale, loading from the database", contents.writtenAt());
+            return false;
+        }
+
+        // active ids first: a coupon written in between is then picked up by the catch-up query
+        Set<String> active = new HashSet<>(repo.findActiveIds());
+        Map<String, CompiledCoupon> byId = new LinkedHashMap<>();
+        for (CompiledCoupon coupon : contents.coupons()) {
+            if (active.contains(coupon.id())) byId.put(coupon.id(), coupon);
+        }
+        List<Coupon> changed = repo.findByUpdatedAtGreaterThanEqual(contents.watermark().minusMillis(catchUpMarginMs));
+        for (Coupon coupon : changed) {
+            CompiledCoupon compiled = compile(coupon);
+            // replacing keeps the coupon's place in catalog order, like an upsert
+            if (compiled == null) byId.remove(coupon.getId());
+            else byId.put(coupon.getId(), compiled);
+        }
+
+        synchronized (writeLock) {
+            Instant now = Instant.now();
+            scheduled.clear();
+            wheel.clear();
+            List<CompiledCoupon> coupons = new ArrayList<>(byId.size());
+            for (CompiledCoupon coupon : byId.values()) {
+                if (place(coupon, now)) coupons.add(coupon);
+            }
+            publish(coupons);
+            loaded = true;
+            log.info("Coupon catalog loaded from {} in {} ms: {} from the file, {} caught up, {} active, version {}",
+                    snapshotPath, (System.nanoTime() - started) / 1_000_000, contents.coupons().size(),
+                    changed.size(), coupons.size(), version());
+        }
+        return true;
+    }
+
+    private void writeSnapshotFile(CatalogSnapshotFile.Contents contents) {
+        if (snapshotPath == null || snapshotPath.isBlank()) return;
+        try {
+            CatalogSnapshotFile.write(Path.of(snapshotPath), contents);
+        } catch (IOException ex) {
+            // the next full load tries again; until then a restart simply loads from the database
+            log.warn("Could not write the catalog snapshot file {}: {}", snapshotPath, ex.getMessage());
+        }
+    }
+
+    /**
+     * Adds or replaces the coupon once the surrounding transaction (if any) commits.
+     * Inactive, expired or uncompilable coupons are dropped from the catalog; ones that start later wait
+     * for their start.
+     */
+    public void upsert(Coupon coupon) {
+        CompiledCoupon compiled = compile(coupon);
+        String id = coupon.getId();
+        afterCommit(() -> {
+            synchronized (writeLock) {
+                written(id);
+                boolean wasScheduled = scheduled.remove(id) != null;
+                List<CompiledCoupon> coupons = new ArrayList<>(current.get().coupons());
+                int idx = indexOf(coupons, id);
+                if (compiled == null || !place(compiled, Instant.now())) {
+                    if (idx < 0 && !wasScheduled && !scheduled.containsKey(id)) return;
+                    if (idx >= 0) coupons.remove(idx);
+                } else if (idx >= 0) {
+                    coupons.set(idx, compiled);
+                } else {
+                    coupons.add(compiled);
+                }
+                publish(coupons);
+            }
+        });
+    }
+
+    public void remove(String couponId) {
+        afterCommit(() -> {
+            synchronized (writeLock) {
+                written(couponId);
+                boolean wasScheduled = scheduled.remove(couponId) != null;
+                List<CompiledCoupon> coupons = new ArrayList<>(current.get().coupons());
+                int idx = indexOf(coupons, couponId);
+                if (idx < 0 && !wasScheduled) return;
+                if (idx >= 0) coupons.remove(idx);
+                publish(coupons);
+            }
+        });
+    }
+
+    /**
+     * Brings the given coupons up to date with their rows as just read from the database, in one publish:
+     * a coupon whose row is gone is removed, the others are replaced like an {@link #upsert}. For changes
+     * made by another node, so there is no transaction to wait for.
+     */
+    public void reload(Collection<String> couponIds, Collection<Coupon> rows) {
+        Map<String, CompiledCoupon> compiled = new HashMap<>();
+        Set<String> present = new HashSet<>();
+        for (Coupon row : rows) {
+            present.add(row.getId());
+            CompiledCoupon c = compile(row);
+            if (c != null) compiled.put(row.getId(), c);
+        }
+        synchronized (writeLock) {
+            Instant now = Instant.now();
+            List<CompiledCoupon> coupons = new ArrayList<>(current.get().coupons());
+            boolean changed = false;
+            for (String id : couponIds) {
+                written(id);
+                if (!present.contains(id)) ruleCache.evict(id);
+                changed |= scheduled.remove(id) != null;
+                int idx = indexOf(coupons, id);
+                CompiledCoupon c = compiled.get(id);
+                if (c == null || !place(c, now)) {
+                    if (idx >= 0) coupons.remove(idx);
+                    changed |= idx >= 0 || scheduled.containsKey(id);
+                } else if (idx >= 0) {
+                    coupons.set(idx, c);
+                    changed = true;
+                } else {
+                    coupons.add(c);
+                    changed = true;
+                }
+            }
+            if (changed) publish(coupons);
+        }
+    }
+
+    /**
+     * Applies every transition due by {@code now}: scheduled coupons whose start has come go live, live
+     * coupons past their expiry leave the catalog (and are queued to be marked inactive). Publishes at most
+     * one new snapshot.
+     */
+    public void advance(Instant now) {
+        synchronized (writeLock) {
+            List<Transition> due = wheel.due(now);
+            if (due.isEmpty()) return;
+
+            Set<String> expired = new HashSet<>();
+            List<CompiledCoupon> activated = new ArrayList<>();
+            CatalogSnapshot snapshot = current.get();
+            for (Transition transition : due) {
+                String id = transition.couponId();
+                CompiledCoupon pending = scheduled.get(id);
+                if (pending != null) {
+                    // superseded by a later write, which scheduled its own transition
+                    if (!transition.at().equals(pending.startsAt())) continue;
+                    if (!pending.isStarted(now)) {
+                        wheel.schedule(transition, transition.at());
+                        continue;
+                    }
+                    scheduled.remove(id);
+                    if (place(pending, now)) activated.add(pending);
+                    continue;
+                }
+                CompiledCoupon live = snapshot.get(id);
+                if (live == null || !transition.at().equals(live.expiresAt())) continue;
+                if (live.isExpired(now)) {
+                    expired.add(id);
+                } else {
+                    // due to the millisecond but not yet strictly past its expiry
+                    wheel.schedule(transition, transition.at());
+                }
+            }
+            if (expired.isEmpty() && activated.isEmpty()) return;
+
+            List<CompiledCoupon> coupons = new ArrayList<>(snapshot.size() + activated.size());
+            for (CompiledCoupon coupon : snapshot.coupons()) {
+                if (!expired.contains(coupon.id())) coupons.add(coupon);
+            }
+            coupons.addAll(activated);
+            toDeactivate.addAll(expired);
+            publish(coupons);
+            log.debug("Coupon catalog advanced: {} live, {} expired, version {}", activated.size(), expired.size(), version());
+        }
+    }
+
+    /**
+     * Applies due transitions even when no request comes in, and marks expired coupons inactive in the
+     * database, {@code deactivate-batch-size} ids per statement.
+     */
+    @Scheduled(fixedDelayString = "${coupon.schedule.tick-ms:1000}")
+    public void tick() {
+        advance(Instant.now());
+        List<String> batch = new ArrayList<>();
+        String id;
+        while ((id = toDeactivate.poll()) != null) {
+            batch.add(id);
+            if (batch.size() >= deactivateBatchSize) {
+                if (!deactivate(batch)) return;
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) deactivate(batch);
+    }
+
+    private boolean deactivate(List<String> ids) {
+        try {
+            repo.deactivateExpired(ids, Instant.now());
+            return true;
+        } catch (DataAccessException ex) {
+            // retried on the next tick
+            toDeactivate.addAll(ids);
+            log.warn("Could not mark {} expired coupons inactive: {}", ids.size(), ex.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Decides where a coupon belongs at {@code now} and schedules its next transition. True if it is live
+     * and goes into the snapshot; a coupon that starts later is kept in {@code scheduled}, an expired one
+     * is only queued to be marked inactive.
+     */
+    private boolean place(CompiledCoupon coupon, Instant now) {
+        if (coupon.isExpired(now)) {
+            toDeactivate.add(coupon.id());
+            return false;
+        }
+        if (!coupon.isStarted(now)) {
+            scheduled.put(coupon.id(), coupon);
+            wheel.schedule(new Transition(coupon.id(), coupon.startsAt()), coupon.startsAt());
+            return false;
+        }
+        if (coupon.expiresAt() != null) {
+            wheel.schedule(new Transition(coupon.id(), coupon.expiresAt()), coupon.expiresAt());
+        }
+        return true;
+    }
+
+    // guarded by writeLock
+    private void written(String couponId) {
+        if (writtenDuringLoad != null) writtenDuringLoad.add(couponId);
+    }
+
+    private CompiledCoupon compile(Coupon coupon) {
+        if (!coupon.isActive() || coupon.getType() == null) return null;
+        CouponRule rule = ruleCache.ruleFor(coupon).orElse(null);
+        return rule == null ? null : CompiledCoupon.of(coupon, rule);
+    }
+
+    private void publish(List<CompiledCoupon> coupons) {
+        Instant nextActivation = null;
+        for (CompiledCoupon coupon : scheduled.values()) {
+            if (nextActivation == null || coupon.startsAt().isBefore(nextActivation)) nextActivation = coupon.startsAt();
+        }
+        scheduledCount = scheduled.size();
+        current.set(new CatalogSnapshot(current.get().version() + 1, coupons, nextActivation));
+    }
+
+    private static int indexOf(List<CompiledCoupon> coupons, String id) {
+        for (int i = 0; i < coupons.size(); i++) {
+            if (coupons.get(i).id().equals(id)) return i;
+        }
+        return -1;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
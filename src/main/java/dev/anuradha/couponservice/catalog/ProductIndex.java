@@ -0,0 +1,79 @@
+package dev.anuradha.couponservice.catalog;
+
+import dev.anuradha.couponservice.rule.BxGyRule;
+import dev.anuradha.couponservice.rule.CouponRule;
+import dev.anuradha.couponservice.rule.ProductRule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inverted index productId -> catalog positions of the PRODUCT and BXGY coupons that can
+ * discount it. A PRODUCT coupon is indexed under its target product; a BXGY coupon under
+ * its get products, since it can only ever discount those. CART coupons are handled by
+ * {@link ThresholdIndex}.
+ */
+final class ProductIndex {
+
+    private static final int[] NONE = new int[0];
+
+    private final Map<Long, int[]> byProduct;
+
+    ProductIndex(List<CompiledCoupon> coupons) {
+        Map<Long, List<Integer>> building = new HashMap<>();
+        for (int i = 0; i < coupons.size(); i++) {
+            CouponRule rule = coupons.get(i).rule();
+            if (rule instanceof ProductRule p) {
+                add(building, p.productId(), i);
+            } else if (rule instanceof BxGyRule b) {
+                for (BxGyRule.Line gp : b.getProducts()) {
+                    add(building, gp.productId(), i);
+                }
+            }
+        }
+        this.byProduct = new HashMap<>(building.size() * 2);
+        building.forEach((productId, positions) -> byProduct.put(productId, toArray(positions)));
+    }
+
+    /**
+     * Positions of the PRODUCT/BXGY coupons indexed under one of the given products, ascending.
+     */
+    int[] candidates(Collection<Long> productIds) {
+        int[] out = NONE;
+        int n = 0;
+        int lists = 0;
+        for (Long productId : productIds) {
+            int[] positions = byProduct.getOrDefault(productId, NONE);
+            if (positions.length == 0) continue;
+            if (n + positions.length > out.length) {
+                out = Arrays.copyOf(out, Math.max(out.length * 2, n + positions.length));
+            }
+            System.arraycopy(positions, 0, out, n, positions.length);
+            n += positions.length;
+            lists++;
+        }
+        if (lists <= 1) return Arrays.copyOf(out, n);
+
+        // restore catalog order and drop coupons reached through several products
+        Arrays.sort(out, 0, n);
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            if (unique == 0 || out[unique - 1] != out[i]) out[unique++] = out[i];
+        }
+        return Arrays.copyOf(out, unique);
+    }
+
+    private static void add(Map<Long, List<Integer>> building, long productId, int position) {
+        List<Integer> positions = building.computeIfAbsent(productId, k -> new ArrayList<>());
+        // a BXGY coupon listing the same get product twice is indexed once
+        if (positions.isEmpty() || positions.get(positions.size() - 1) != position) positions.add(position);
+    }
+
+    private static int[] toArray(List<Integer> positions) {
+        return positions.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
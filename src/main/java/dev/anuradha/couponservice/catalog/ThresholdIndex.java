@@ -0,0 +1,107 @@
+package dev.anuradha.couponservice.catalog;
+
+import dev.anuradha.couponservice.rule.CartRule;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * CART coupons sorted by threshold, split into PERCENT and FLAT groups. The coupons a cart
+ * qualifies for are a prefix of each group, found by binary search on the cart total, and the
+ * best coupon of each prefix is precomputed so it can be read without scanning.
+ */
+final class ThresholdIndex {
+
+    private static final int[] NONE = new int[0];
+
+    private final Group percent;
+    private final Group flat;
+
+    ThresholdIndex(List<CompiledCoupon> coupons) {
+        List<Integer> percentPositions = new ArrayList<>();
+        List<Integer> flatPositions = new ArrayList<>();
+        for (int i = 0; i < coupons.size(); i++) {
+            if (coupons.get(i).rule() instanceof CartRule rule) {
+                (rule.percent() ? percentPositions : flatPositions).add(i);
+            }
+        }
+        this.percent = new Group(coupons, percentPositions);
+        this.flat = new Group(coupons, flatPositions);
+    }
+
+    /**
+     * Positions of the CART coupons whose threshold the total reaches, ascending. Only the two
+     * binary-searched prefixes are copied; sorting them back into catalog order costs the k
+     * qualifying positions, never the coupons the cart doesn't reach.
+     */
+    int[] qualifying(BigDecimal total) {
+        int p = percent.prefixLength(total);
+        int f = flat.prefixLength(total);
+        if (p + f == 0) return NONE;
+        int[] out = new int[p + f];
+        System.arraycopy(percent.positions, 0, out, 0, p);
+        System.arraycopy(flat.positions, 0, out, p, f);
+        Arrays.sort(out);
+        return out;
+    }
+
+    /**
+     * Position of the qualifying PERCENT coupon with the highest percentage, or -1.
+     */
+    int bestPercent(BigDecimal total) {
+        return percent.best(total);
+    }
+
+    /**
+     * Position of the qualifying FLAT coupon with the highest amount, or -1.
+     */
+    int bestFlat(BigDecimal total) {
+        return flat.best(total);
+    }
+
+    private static final class Group {
+        private final BigDecimal[] thresholds;
+        private final int[] positions;          // catalog positions, threshold order
+        private final int[] bestOfPrefix;       // bestOfPrefix[i] = best position among positions[0..i]
+
+        Group(List<CompiledCoupon> coupons, List<Integer> members) {
+            members.sort(Comparator.comparing(i -> rule(coupons, i).threshold()));
+            int n = members.size();
+            this.thresholds = new BigDecimal[n];
+            this.positions = new int[n];
+            this.bestOfPrefix = new int[n];
+            for (int i = 0; i < n; i++) {
+                int position = members.get(i);
+                thresholds[i] = rule(coupons, position).threshold();
+                positions[i] = position;
+                int best = i == 0 ? position : bestOfPrefix[i - 1];
+                int cmp = rule(coupons, position).discountValue().compareTo(rule(coupons, best).discountValue());
+                bestOfPrefix[i] = cmp > 0 || (cmp == 0 && position < best) ? position : best;
+            }
+        }
+
+        // number of coupons with threshold <= total
+        int prefixLength(BigDecimal total) {
+            int lo = 0;
+            int hi = thresholds.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (thresholds[mid].compareTo(total) <= 0) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        int best(BigDecimal total) {
+            int n = prefixLength(total);
+            return n == 0 ? -1 : bestOfPrefix[n - 1];
+        }
+
+        private static CartRule rule(List<CompiledCoupon> coupons, int position) {
+            return (CartRule) coupons.get(position).rule();
+        }
+    }
+}
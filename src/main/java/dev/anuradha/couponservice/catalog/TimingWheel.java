@@ -0,0 +1,80 @@
+package dev.anuradha.couponservice.catalog;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Hashed timing wheel: each deadline goes into the slot of its tick, modulo the wheel size, so scheduling
+ * is O(1) and {@link #due} only visits the slots of the ticks that passed since the last call instead of
+ * every scheduled item. Deadlines further out than one revolution share slots with nearer ones and are
+ * simply skipped until their turn comes. Not thread-safe; the catalog only uses it under its write lock.
+ */
+final class TimingWheel<T> {
+
+    private record Timeout<T>(T item, long deadlineMs) {
+    }
+
+    private final long tickMs;
+    private final List<Timeout<T>>[] slots;
+    private final int mask;
+    // first tick whose slot may still hold due items
+    private long cursor;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(long tickMs, int wheelSize, Instant start) {
+        if (tickMs <= 0) throw new IllegalArgumentException("tickMs must be positive");
+        if (Integer.bitCount(wheelSize) != 1) throw new IllegalArgumentException("wheelSize must be a power of two");
+        this.tickMs = tickMs;
+        this.slots = new List[wheelSize];
+        for (int i = 0; i < wheelSize; i++) slots[i] = new ArrayList<>();
+        this.mask = wheelSize - 1;
+        this.cursor = start.toEpochMilli() / tickMs;
+    }
+
+    void schedule(T item, Instant deadline) {
+        long deadlineMs = deadline.toEpochMilli();
+        // already past: put it where the next call to due() looks first
+        long tick = Math.max(deadlineMs / tickMs, cursor);
+        slots[(int) (tick & mask)].add(new Timeout<>(item, deadlineMs));
+        size++;
+    }
+
+    /**
+     * Removes and returns everything whose deadline is at or before {@code now}, in no particular order.
+     */
+    List<T> due(Instant now) {
+        long nowMs = now.toEpochMilli();
+        long nowTick = nowMs / tickMs;
+        List<T> out = new ArrayList<>();
+        if (nowTick < cursor) return out;
+
+        // after a long pause every slot has to be looked at once, but no more than once
+        long ticks = Math.min(nowTick - cursor + 1, slots.length);
+        for (long t = 0; t < ticks; t++) {
+            Iterator<Timeout<T>> it = slots[(int) ((cursor + t) & mask)].iterator();
+            while (it.hasNext()) {
+                Timeout<T> timeout = it.next();
+                if (timeout.deadlineMs() <= nowMs) {
+                    out.add(timeout.item());
+                    it.remove();
+                    size--;
+                }
+            }
+        }
+        // the current tick isn't over yet, so its slot is looked at again next time
+        cursor = nowTick;
+        return out;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        for (List<Timeout<T>> slot : slots) slot.clear();
+        size = 0;
+    }
+}
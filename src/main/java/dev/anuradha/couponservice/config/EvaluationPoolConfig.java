@@ -0,0 +1,22 @@
+package dev.anuradha.couponservice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ForkJoinPool;
+
+@Configuration
+public class EvaluationPoolConfig {
+
+    /**
+     * Dedicated pool for parallel coupon evaluation, kept apart from the common pool and
+     * sized explicitly so it can't take every core away from the Tomcat request threads.
+     * 0 means half the available processors, at least one.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool couponEvaluationPool(@Value("${coupon.evaluation.parallelism:0}") int parallelism) {
+        int threads = parallelism > 0 ? parallelism : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        return new ForkJoinPool(threads);
+    }
+}
@@ -0,0 +1,77 @@
+package dev.anuradha.couponservice.config;
+
+import dev.anuradha.couponservice.catalog.CouponCatalog;
+import dev.anuradha.couponservice.service.ApplicableCouponsCache;
+import dev.anuradha.couponservice.service.CouponCodeIndex;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder couponCatalogMetrics(CouponCatalog catalog) {
+        return registry -> {
+            Gauge.builder("coupon.catalog.size", catalog, CouponCatalog::size)
+                    .description("Active coupons in the in-memory catalog")
+                    .register(registry);
+            Gauge.builder("coupon.catalog.version", catalog, CouponCatalog::version)
+                    .description("Catalog snapshot version, bumped on every change")
+                    .register(registry);
+            Gauge.builder("coupon.catalog.scheduled", catalog, CouponCatalog::scheduledCount)
+                    .description("Coupons loaded ahead of their start time")
+                    .register(registry);
+        };
+    }
+
+    // apply-by-code lookups by how they ended, and the code filter's size and false-positive rates
+    @Bean
+    public MeterBinder couponCodeIndexMetrics(CouponCodeIndex codes) {
+        return registry -> {
+            FunctionCounter.builder("coupon.codes.lookups", codes, CouponCodeIndex::rejectedCount)
+                    .description("Apply-by-code lookups, by outcome")
+                    .tag("outcome", "rejected")
+                    .register(registry);
+            FunctionCounter.builder("coupon.codes.lookups", codes, CouponCodeIndex::falsePositiveCount)
+                    .description("Apply-by-code lookups, by outcome")
+                    .tag("outcome", "false_positive")
+                    .register(registry);
+            FunctionCounter.builder("coupon.codes.lookups", codes, CouponCodeIndex::foundCount)
+                    .description("Apply-by-code lookups, by outcome")
+                    .tag("outcome", "found")
+                    .register(registry);
+            Gauge.builder("coupon.codes.filter.fpp", codes, CouponCodeIndex::observedFalsePositiveRate)
+                    .description("False-positive rate of the code filter: observed, or expected from its fill")
+                    .tag("source", "observed")
+                    .register(registry);
+            Gauge.builder("coupon.codes.filter.fpp", codes, CouponCodeIndex::expectedFalsePositiveRate)
+                    .description("False-positive rate of the code filter: observed, or expected from its fill")
+                    .tag("source", "expected")
+                    .register(registry);
+            Gauge.builder("coupon.codes.filter.memory", codes, CouponCodeIndex::filterMemoryBytes)
+                    .description("Size of the code filter's bit array")
+                    .baseUnit("bytes")
+                    .register(registry);
+        };
+    }
+
+    // hit/miss/eviction counts of the applicable-coupons result cache, as cache.gets{result=hit|miss} etc.
+    @Bean
+    public MeterBinder applicableCouponsCacheMetrics(ApplicableCouponsCache cache) {
+        return registry -> {
+            CaffeineCacheMetrics.monitor(registry, cache.nativeCache(), "applicable-coupons");
+            FunctionCounter.builder("coupon.applicable.coalesced", cache, ApplicableCouponsCache::coalescedCount)
+                    .description("Requests that found an identical evaluation in flight, by whether they got its result")
+                    .tag("outcome", "joined")
+                    .register(registry);
+            FunctionCounter.builder("coupon.applicable.coalesced", cache, ApplicableCouponsCache::coalesceTimeoutCount)
+                    .description("Requests that found an identical evaluation in flight, by whether they got its result")
+                    .tag("outcome", "timed_out")
+                    .register(registry);
+        };
+    }
+}
@@ -0,0 +1,31 @@
+package dev.anuradha.couponservice.config;
+
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.net.URI;
+import java.util.UUID;
+
+@Configuration
+public class SecondLevelCacheConfig {
+
+    /**
+     * Gives Hibernate a JCache manager of its own instead of the provider's JVM-wide default one, so two
+     * application contexts in one JVM (as in the two-node test) don't share regions, and closing one doesn't
+     * close the other's caches. The regions themselves are configured in application.conf, which Caffeine
+     * reads for any manager URI that doesn't name another file.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheManager() {
+        return properties -> {
+            CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+            properties.put(ConfigSettings.CACHE_MANAGER, provider.getCacheManager(
+                    URI.create("coupon-service:" + UUID.randomUUID()), SecondLevelCacheConfig.class.getClassLoader()));
+        };
+    }
+}
@@ -1,9 +1,17 @@
 package dev.anuradha.couponservice.controller;
 
+import dev.anuradha.couponservice.dto.ApplicableCouponsResponseDto;
+import dev.anuradha.couponservice.dto.BatchCartRequestDto;
+import dev.anuradha.couponservice.dto.BatchCartResponseDto;
 import dev.anuradha.couponservice.dto.CartDto;
+import dev.anuradha.couponservice.dto.RedeemRequestDto;
+import dev.anuradha.couponservice.dto.RedemptionResultDto;
 import dev.anuradha.couponservice.model.Coupon;
+import dev.anuradha.couponservice.service.CouponCodeIndex;
 import dev.anuradha.couponservice.service.CouponService;
+import dev.anuradha.couponservice.service.RedemptionService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -16,30 +24,33 @@ import java.util.*;
 public class CouponApplicationController {
 
     private final CouponService couponService;
+    private final RedemptionService redemptionService;
+    private final CouponCodeIndex codeIndex;
 
     @PostMapping("/applicable-coupons")
-    public ResponseEntity<?> applicableCoupons(@RequestBody CartDto cartDto){
-        Map<String, BigDecimal> map = couponService.applicableCouponsForCart(cartDto);
-
-        List<Map<String,Object>> resp = new ArrayList<>();
-        for(Map.Entry<String, BigDecimal> entry : map.entrySet()){
-            couponService.findById(entry.getKey()).ifPresent(coupon ->{
-                Map<String, Object> item = new LinkedHashMap<>();
-                item.put("coupon_id", coupon.getId());
-                item.put("code", coupon.getCode());
-                item.put("type", coupon.getType());
-                item.put("discount", entry.getValue());
-                resp.add(item);
-            });
-        }
-        return ResponseEntity.ok(Collections.singletonMap("applicable_coupons",resp));
+    public ResponseEntity<ApplicableCouponsResponseDto> applicableCoupons(@RequestBody CartDto cartDto){
+        return ResponseEntity.ok(new ApplicableCouponsResponseDto(couponService.applicableCouponsForCart(cartDto)));
+    }
+
+    @PostMapping("/applicable-coupons/batch")
+    public ResponseEntity<BatchCartResponseDto> applicableCouponsBatch(@RequestBody BatchCartRequestDto batch){
+        return ResponseEntity.ok(new BatchCartResponseDto(couponService.applicableCouponsForCarts(batch.getCarts())));
     }
 
     @PostMapping("/apply-coupon/{id}")
     public ResponseEntity<?> applyCoupon(@PathVariable String id,
                                          @RequestBody CartDto cartDto){
-        Optional<Coupon> optionalCoupon = couponService.findById(id);
+        return apply(couponService.findById(id), cartDto);
+    }
 
+    // codes people type; unknown ones are mostly turned away by the code filter without a DB query
+    @PostMapping("/apply-coupon/by-code/{code}")
+    public ResponseEntity<?> applyCouponByCode(@PathVariable String code,
+                                               @RequestBody CartDto cartDto){
+        return apply(codeIndex.resolve(code), cartDto);
+    }
+
+    private ResponseEntity<?> apply(Optional<Coupon> optionalCoupon, CartDto cartDto){
         if(optionalCoupon.isEmpty()){
             return ResponseEntity.notFound().build();
         }
@@ -60,4 +71,17 @@ public class CouponApplicationController {
         result.put("final_price", totalPrice.subtract(totalDiscount));
         return ResponseEntity.ok(Collections.singletonMap("updated_cart", result));
     }
+
+    // redeems one use of the coupon; 409 once its global or per-customer limit is used up
+    @PostMapping("/redeem-coupon/{id}")
+    public ResponseEntity<RedemptionResultDto> redeemCoupon(@PathVariable String id,
+                                                            @RequestBody(required = false) RedeemRequestDto request){
+        RedemptionService.Outcome outcome = redemptionService.redeem(id, request == null ? null : request.customerId());
+        HttpStatus status = switch (outcome) {
+            case REDEEMED -> HttpStatus.OK;
+            case NOT_FOUND -> HttpStatus.NOT_FOUND;
+            case EXPIRED, LIMIT_REACHED, CUSTOMER_LIMIT_REACHED -> HttpStatus.CONFLICT;
+        };
+        return ResponseEntity.status(status).body(new RedemptionResultDto(id, outcome));
+    }
 }
@@ -1,17 +1,33 @@
 package dev.anuradha.couponservice.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.anuradha.couponservice.dto.CouponImportResultDto;
 import dev.anuradha.couponservice.dto.CouponMapper;
+import dev.anuradha.couponservice.dto.CouponPageDto;
 import dev.anuradha.couponservice.dto.CouponRequestDto;
 import dev.anuradha.couponservice.dto.CouponResponseDto;
 import dev.anuradha.couponservice.dto.UpdateCouponDto;
 import dev.anuradha.couponservice.model.Coupon;
 import dev.anuradha.couponservice.model.CouponType;
+import dev.anuradha.couponservice.service.CouponImportReader;
+import dev.anuradha.couponservice.service.CouponImportService;
+import dev.anuradha.couponservice.service.CouponPage;
 import dev.anuradha.couponservice.service.CouponService;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-
+import org.springframework.web.context.request.async.WebAsyncTask;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -22,6 +38,15 @@ public class CouponController {
 
     private final CouponService couponService;
     private final CouponMapper couponMapper;
+    private final ObjectMapper objectMapper;
+    private final CouponImportService couponImportService;
+
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String CSV = "text/csv";
+
+    // the export may run longer than the default async timeout, so it carries its own
+    @Value("${coupon.list.stream-timeout-ms:3600000}")
+    private long streamTimeoutMs = 3_600_000;
 
     //create a coupon
     @PostMapping
@@ -41,14 +66,53 @@ public class CouponController {
     }
 
 
-    //Get all coupons list
+    //bulk import from an NDJSON or CSV body, read and written in batches as it streams in
+    @PostMapping(value = "/import", consumes = NDJSON)
+    public ResponseEntity<CouponImportResultDto> importNdjson(InputStream body){
+        return ResponseEntity.ok(couponImportService.importCoupons(CouponImportReader.ndjson(reader(body), objectMapper)));
+    }
+
+    @PostMapping(value = "/import", consumes = CSV)
+    public ResponseEntity<CouponImportResultDto> importCsv(InputStream body){
+        return ResponseEntity.ok(couponImportService.importCoupons(CouponImportReader.csv(reader(body))));
+    }
+
+    private static BufferedReader reader(InputStream body) {
+        return new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+    }
+
+    //list coupons, one keyset page at a time
     @GetMapping
-    public ResponseEntity<List<CouponResponseDto>> listAll(){
-        List<Coupon> coupons = couponService.listAll();
-        List<CouponResponseDto> responses = coupons.stream()
+    public ResponseEntity<CouponPageDto> list(@RequestParam(required = false) String cursor,
+                                              @RequestParam(required = false) Integer limit){
+        CouponPage page = couponService.listPage(cursor, limit);
+        List<CouponResponseDto> items = page.coupons().stream()
                 .map(couponMapper::toResponse)
                 .collect(Collectors.toList());
-        return ResponseEntity.ok(responses);
+        return ResponseEntity.ok(new CouponPageDto(items, page.nextCursor()));
+    }
+
+    //stream every coupon as NDJSON, written as rows are read from the database
+    @GetMapping(produces = NDJSON)
+    public WebAsyncTask<Void> streamAll(HttpServletResponse response){
+        return new WebAsyncTask<>(streamTimeoutMs, () -> {
+            response.setContentType(NDJSON);
+            OutputStream out = response.getOutputStream();
+            try {
+                couponService.forEachCoupon(coupon -> {
+                    try {
+                        out.write(objectMapper.writeValueAsBytes(couponMapper.toResponse(coupon)));
+                        out.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.flush();
+            return null;
+        });
     }
 
 
@@ -0,0 +1,15 @@
+package dev.anuradha.couponservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import dev.anuradha.couponservice.model.CouponType;
+
+import java.math.BigDecimal;
+
+/**
+ * One applicable coupon for a cart, carrying the coupon metadata so callers don't need to look it up.
+ */
+public record ApplicableCouponDto(@JsonProperty("coupon_id") String couponId,
+                                  String code,
+                                  CouponType type,
+                                  BigDecimal discount) {
+}
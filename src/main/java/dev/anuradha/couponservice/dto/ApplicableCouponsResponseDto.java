@@ -0,0 +1,9 @@
+package dev.anuradha.couponservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+public record ApplicableCouponsResponseDto(
+        @JsonProperty("applicable_coupons") List<ApplicableCouponDto> applicableCoupons) {
+}
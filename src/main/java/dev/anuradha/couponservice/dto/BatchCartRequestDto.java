@@ -0,0 +1,17 @@
+package dev.anuradha.couponservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Setter
+@Getter
+public class BatchCartRequestDto {
+
+    private List<CartDto> carts;
+}
@@ -0,0 +1,6 @@
+package dev.anuradha.couponservice.dto;
+
+import java.util.List;
+
+public record BatchCartResponseDto(List<BatchCartResultDto> results) {
+}
@@ -0,0 +1,24 @@
+package dev.anuradha.couponservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Outcome for one cart of a batch: either its applicable coupons (in catalog order) or the
+ * error that cart failed with. Other carts are unaffected by an error.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchCartResultDto(int index,
+                                 @JsonProperty("applicable_coupons") List<ApplicableCouponDto> applicableCoupons,
+                                 String error) {
+
+    public static BatchCartResultDto ok(int index, List<ApplicableCouponDto> applicableCoupons) {
+        return new BatchCartResultDto(index, applicableCoupons, null);
+    }
+
+    public static BatchCartResultDto failed(int index, String error) {
+        return new BatchCartResultDto(index, null, error);
+    }
+}
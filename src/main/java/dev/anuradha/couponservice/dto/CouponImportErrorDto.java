@@ -0,0 +1,10 @@
+package dev.anuradha.couponservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Why one line of a bulk import was rejected. {@code code} is null when the line couldn't be read at all.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record CouponImportErrorDto(long line, String code, String error) {
+}
@@ -0,0 +1,10 @@
+package dev.anuradha.couponservice.dto;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk import. {@code errors} lists the first rejected lines (up to
+ * {@code coupon.import.max-reported-errors}); {@code failed} counts all of them.
+ */
+public record CouponImportResultDto(long imported, long failed, List<CouponImportErrorDto> errors) {
+}
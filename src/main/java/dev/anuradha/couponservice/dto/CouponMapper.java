@@ -13,7 +13,10 @@ public class CouponMapper {
         coupon.setType(req.getType());
         coupon.setDetails(req.getDetails());
         coupon.setActive(req.isActive());
+        coupon.setStartsAt(req.getStartsAt());
         coupon.setExpiresAt(req.getExpiresAt());
+        coupon.setMaxRedemptions(req.getMaxRedemptions());
+        coupon.setMaxRedemptionsPerCustomer(req.getMaxRedemptionsPerCustomer());
         return coupon;
     }
 
@@ -25,7 +28,11 @@ public class CouponMapper {
         responseDto.setType(c.getType());
         responseDto.setDetails(c.getDetails());
         responseDto.setActive(c.isActive());
+        responseDto.setStartsAt(c.getStartsAt());
         responseDto.setExpiresAt(c.getExpiresAt());
+        responseDto.setMaxRedemptions(c.getMaxRedemptions());
+        responseDto.setMaxRedemptionsPerCustomer(c.getMaxRedemptionsPerCustomer());
+        responseDto.setRedemptionCount(c.getRedemptionCount());
         responseDto.setCreatedAt(c.getCreatedAt());
         responseDto.setUpdatedAt(c.getUpdatedAt());
         return responseDto;
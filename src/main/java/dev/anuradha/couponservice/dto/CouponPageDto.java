@@ -0,0 +1,12 @@
+package dev.anuradha.couponservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * One page of coupons; pass {@code next_cursor} back as {@code cursor} for the next page (null on the last page).
+ */
+public record CouponPageDto(List<CouponResponseDto> items,
+                            @JsonProperty("next_cursor") String nextCursor) {
+}
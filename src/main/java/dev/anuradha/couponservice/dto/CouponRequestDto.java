@@ -22,5 +22,11 @@ public class CouponRequestDto {
 
     private boolean active = true;
 
+    private Instant startsAt;
+
     private Instant expiresAt;
+
+    private Integer maxRedemptions;
+
+    private Integer maxRedemptionsPerCustomer;
 }
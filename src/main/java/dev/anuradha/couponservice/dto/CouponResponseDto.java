@@ -19,7 +19,11 @@ public class CouponResponseDto {
     private CouponType type;
     private String details;
     private boolean active;
+    private Instant startsAt;
     private Instant expiresAt;
+    private Integer maxRedemptions;
+    private Integer maxRedemptionsPerCustomer;
+    private long redemptionCount;
     private Instant createdAt;
     private Instant updatedAt;
 }
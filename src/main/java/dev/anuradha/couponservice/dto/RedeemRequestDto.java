@@ -0,0 +1,9 @@
+package dev.anuradha.couponservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Who is redeeming; required only for coupons with a per-customer limit.
+ */
+public record RedeemRequestDto(@JsonProperty("customer_id") String customerId) {
+}
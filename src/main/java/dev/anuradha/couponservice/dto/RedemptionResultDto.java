@@ -0,0 +1,8 @@
+package dev.anuradha.couponservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import dev.anuradha.couponservice.service.RedemptionService;
+
+public record RedemptionResultDto(@JsonProperty("coupon_id") String couponId,
+                                  RedemptionService.Outcome result) {
+}
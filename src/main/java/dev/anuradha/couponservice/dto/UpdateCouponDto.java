@@ -16,5 +16,8 @@ public class UpdateCouponDto {
     private String type;
     private String details;
     private Boolean active;     // wrapper - null if omitted
+    private Instant startsAt;
     private Instant expiresAt;
+    private Integer maxRedemptions;
+    private Integer maxRedemptionsPerCustomer;
 }
@@ -0,0 +1,105 @@
+package dev.anuradha.couponservice.metrics;
+
+import dev.anuradha.couponservice.model.CouponType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters for the coupon evaluation hot path. All meters are registered up front so
+ * recording is a plain field/EnumMap read, not a registry lookup per coupon.
+ */
+@Component
+public class CouponMetrics {
+
+    private final Map<CouponType, Timer> evaluateTimers = new EnumMap<>(CouponType.class);
+    private final Map<CouponType, Timer> applyTimers = new EnumMap<>(CouponType.class);
+    private final Map<CouponType, Counter> evaluateErrors = new EnumMap<>(CouponType.class);
+    private final Map<CouponType, Counter> applyErrors = new EnumMap<>(CouponType.class);
+    private final Counter parseFailures;
+    private final DistributionSummary evaluatedPerRequest;
+    private final DistributionSummary matchedPerRequest;
+    private final Timer changeLag;
+
+    public CouponMetrics(MeterRegistry registry) {
+        for (CouponType type : CouponType.values()) {
+            evaluateTimers.put(type, timer(registry, type, "evaluate"));
+            applyTimers.put(type, timer(registry, type, "apply"));
+            evaluateErrors.put(type, errors(registry, type, "evaluate"));
+            applyErrors.put(type, errors(registry, type, "apply"));
+        }
+        parseFailures = Counter.builder("coupon.details.parse.failures")
+                .description("Coupon details JSON that could not be parsed")
+                .register(registry);
+        evaluatedPerRequest = DistributionSummary.builder("coupon.applicable.evaluated")
+                .description("Coupons evaluated per applicable-coupons request")
+                .publishPercentileHistogram()
+                .register(registry);
+        matchedPerRequest = DistributionSummary.builder("coupon.applicable.matched")
+                .description("Coupons that produced a discount per applicable-coupons request")
+                .publishPercentileHistogram()
+                .register(registry);
+        changeLag = Timer.builder("coupon.changes.lag")
+                .description("Time from a coupon write on another node to this node's catalog having it")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofMinutes(5))
+                .register(registry);
+    }
+
+    public void recordEvaluate(CouponType type, long nanos) {
+        evaluateTimers.get(type).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordApply(CouponType type, long nanos) {
+        applyTimers.get(type).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    // an exception the evaluation path swallowed and turned into "no discount"
+    public void evaluateError(CouponType type) {
+        evaluateErrors.get(type).increment();
+    }
+
+    public void applyError(CouponType type) {
+        applyErrors.get(type).increment();
+    }
+
+    public void parseFailure() {
+        parseFailures.increment();
+    }
+
+    public void recordRequest(int evaluated, int matched) {
+        evaluatedPerRequest.record(evaluated);
+        matchedPerRequest.record(matched);
+    }
+
+    public void recordChangeLag(Duration lag) {
+        changeLag.record(lag.isNegative() ? Duration.ZERO : lag);
+    }
+
+    private static Timer timer(MeterRegistry registry, CouponType type, String method) {
+        return Timer.builder("coupon.evaluator")
+                .description("Time spent in a coupon evaluator")
+                .tag("type", type.name())
+                .tag("method", method)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(100))
+                .maximumExpectedValue(Duration.ofMillis(100))
+                .register(registry);
+    }
+
+    private static Counter errors(MeterRegistry registry, CouponType type, String method) {
+        return Counter.builder("coupon.evaluator.errors")
+                .description("Exceptions swallowed by the evaluation path")
+                .tag("type", type.name())
+                .tag("method", method)
+                .register(registry);
+    }
+}
@@ -6,6 +6,8 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.time.Instant;
 import java.util.UUID;
@@ -15,9 +17,19 @@ import java.util.UUID;
 @Getter
 @AllArgsConstructor
 @NoArgsConstructor
-@Table(name = "coupons")
+@Table(name = "coupons",
+        indexes = {
+                @Index(name = "idx_coupons_created_id", columnList = "created_at, id"),
+                @Index(name = "idx_coupons_updated_at", columnList = "updated_at")
+        })
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Coupon.CACHE)
 public class Coupon {
 
+    // second-level cache regions, sized in application.conf
+    public static final String CACHE = "coupons";
+    public static final String BY_CODE_CACHE = "coupon-by-code";
+
     @Id
     @Column(name = "id", nullable = false, updatable = false)
     private String id = UUID.randomUUID().toString();
@@ -35,6 +47,9 @@ public class Coupon {
     @Column(name = "is_active")
     private boolean active = true;                        //whether the coupon is active or no
 
+    @Column(name = "starts_at")
+    private Instant startsAt;                             //null = live as soon as it is saved
+
     @Column(name = "expires_at")
     private Instant expiresAt;
 
@@ -44,4 +59,21 @@ public class Coupon {
     @Column(name = "updated_at")
     private Instant updatedAt = Instant.now();
 
+    @Column(name = "max_redemptions")
+    private Integer maxRedemptions;                       //null = unlimited
+
+    @Column(name = "max_redemptions_per_customer")
+    private Integer maxRedemptionsPerCustomer;            //null = unlimited
+
+    // only ever changed by conditional/additive updates (see RedemptionService), never written back from an entity
+    @Column(name = "redemptions_reserved", nullable = false, updatable = false)
+    private long redemptionsReserved;                     //handed out to nodes, never above maxRedemptions
+
+    @Column(name = "redemption_count", nullable = false, updatable = false)
+    private long redemptionCount;                         //confirmed redemptions, flushed in the background
+
+    @Version
+    @Column(name = "version")
+    private Long version;                                 //bumped on every update, also keys compiled rules
+
 }
@@ -0,0 +1,49 @@
+package dev.anuradha.couponservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * One row per coupon write, inserted in the writing transaction (a transactional outbox), so other nodes
+ * can bring their catalogs up to date by reading the log in {@code seq} order. The row only names the
+ * coupon; readers load its current state, so applying a change twice or out of order is harmless.
+ */
+@Entity
+@Setter
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "coupon_changes",
+        indexes = @Index(name = "idx_coupon_changes_changed_at", columnList = "changed_at"))
+public class CouponChange {
+
+    public enum Kind { UPSERT, DELETE }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "seq")
+    private Long seq;
+
+    @Column(name = "coupon_id", nullable = false)
+    private String couponId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "kind", nullable = false, length = 8)
+    private Kind kind;
+
+    // node that made the change; it has already applied it
+    @Column(name = "origin", nullable = false, length = 64)
+    private String origin;
+
+    @Column(name = "changed_at", nullable = false)
+    private Instant changedAt;
+
+    public CouponChange(String couponId, Kind kind, String origin, Instant changedAt) {
+        this(null, couponId, kind, origin, changedAt);
+    }
+}
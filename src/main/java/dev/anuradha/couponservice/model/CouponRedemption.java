@@ -0,0 +1,44 @@
+package dev.anuradha.couponservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+
+/**
+ * Redemptions of one coupon by one customer; only kept for coupons with a per-customer limit.
+ */
+@Entity
+@Setter
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "coupon_redemptions")
+@IdClass(CouponRedemption.Key.class)
+public class CouponRedemption {
+
+    @Id
+    @Column(name = "coupon_id", nullable = false)
+    private String couponId;
+
+    @Id
+    @Column(name = "customer_id", nullable = false)
+    private String customerId;
+
+    @Column(name = "redemption_count", nullable = false)
+    private int redemptionCount;
+
+    @Getter
+    @Setter
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Key implements Serializable {
+        private String couponId;
+        private String customerId;
+    }
+}
@@ -0,0 +1,72 @@
+package dev.anuradha.couponservice.model;
+
+import dev.anuradha.couponservice.rule.BxGyRule;
+import dev.anuradha.couponservice.rule.CouponRule;
+import dev.anuradha.couponservice.rule.ProductRule;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A product a coupon's rule refers to, copied out of the opaque {@code details} so the database can
+ * index it. CART coupons have no rows; a PRODUCT coupon has its target, a BXGY coupon its buy and get
+ * products. Rewritten whenever the coupon's rule changes.
+ */
+@Entity
+@Setter
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "coupon_targets",
+        indexes = @Index(name = "idx_coupon_targets_product", columnList = "product_id, role"))
+@IdClass(CouponTarget.Key.class)
+public class CouponTarget {
+
+    public enum Role { TARGET, BUY, GET }
+
+    @Id
+    @Column(name = "coupon_id", nullable = false)
+    private String couponId;
+
+    @Id
+    @Column(name = "product_id", nullable = false)
+    private long productId;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = "role", nullable = false, length = 8)
+    private Role role;
+
+    public static List<CouponTarget> of(String couponId, CouponRule rule) {
+        Set<CouponTarget.Key> keys = new LinkedHashSet<>();
+        if (rule instanceof ProductRule p) {
+            keys.add(new Key(couponId, p.productId(), Role.TARGET));
+        } else if (rule instanceof BxGyRule b) {
+            for (BxGyRule.Line line : b.buyProducts()) keys.add(new Key(couponId, line.productId(), Role.BUY));
+            for (BxGyRule.Line line : b.getProducts()) keys.add(new Key(couponId, line.productId(), Role.GET));
+        }
+        List<CouponTarget> targets = new ArrayList<>(keys.size());
+        for (Key key : keys) targets.add(new CouponTarget(key.getCouponId(), key.getProductId(), key.getRole()));
+        return targets;
+    }
+
+    @Getter
+    @Setter
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Key implements Serializable {
+        private String couponId;
+        private long productId;
+        private Role role;
+    }
+}
@@ -0,0 +1,31 @@
+package dev.anuradha.couponservice.repositories;
+
+import dev.anuradha.couponservice.model.CouponChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface CouponChangeRepository extends JpaRepository<CouponChange, Long> {
+
+    // one page of the log, a range scan on the primary key
+    List<CouponChange> findBySeqGreaterThanOrderBySeqAsc(long afterSeq, Pageable page);
+
+    // rows of filled gaps, by primary key
+    List<CouponChange> findBySeqIn(Collection<Long> seqs);
+
+    // where a starting node reads from: everything logged since could belong to a transaction open during its load
+    @Query("select coalesce(max(c.seq), 0) from CouponChange c where c.changedAt < :before")
+    long maxSeqBefore(@Param("before") Instant before);
+
+    @Transactional
+    @Modifying
+    @Query("delete from CouponChange c where c.changedAt < :before")
+    int deleteOlderThan(@Param("before") Instant before);
+}
@@ -0,0 +1,38 @@
+package dev.anuradha.couponservice.repositories;
+
+import dev.anuradha.couponservice.model.CouponRedemption;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface CouponRedemptionRepository extends JpaRepository<CouponRedemption, CouponRedemption.Key> {
+
+    // conditional increment: the check and the write are one statement, so concurrent requests can't both pass
+    @Transactional
+    @Modifying
+    @Query("update CouponRedemption r set r.redemptionCount = r.redemptionCount + 1 "
+            + "where r.couponId = :couponId and r.customerId = :customerId and r.redemptionCount < :limit")
+    int incrementBelow(@Param("couponId") String couponId, @Param("customerId") String customerId,
+                       @Param("limit") int limit);
+
+    // first redemption for the customer; fails on the primary key if another request got there first. The
+    // declared table keeps Hibernate from invalidating every second-level cache region, as it does for a
+    // native statement it can't see into
+    @Transactional
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "coupon_redemptions"))
+    @Query(value = "insert into coupon_redemptions (coupon_id, customer_id, redemption_count) values (:couponId, :customerId, 1)",
+            nativeQuery = true)
+    int insertFirst(@Param("couponId") String couponId, @Param("customerId") String customerId);
+
+    @Transactional
+    @Modifying
+    @Query("update CouponRedemption r set r.redemptionCount = r.redemptionCount - 1 "
+            + "where r.couponId = :couponId and r.customerId = :customerId and r.redemptionCount > 0")
+    int decrement(@Param("couponId") String couponId, @Param("customerId") String customerId);
+}
@@ -1,11 +1,88 @@
 package dev.anuradha.couponservice.repositories;
 
 import dev.anuradha.couponservice.model.Coupon;
+import dev.anuradha.couponservice.model.CouponTarget;
+import dev.anuradha.couponservice.model.CouponType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface CouponRepository extends JpaRepository<Coupon, String> {
+public interface CouponRepository extends JpaRepository<Coupon, String>, CouponRowUpdates {
+    // query cache: code -> id, the coupon itself then comes from the entity cache
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = Coupon.BY_CODE_CACHE)})
     Optional<Coupon> findByCode(String code);
 
+    @Query("select c.maxRedemptions - c.redemptionsReserved from Coupon c where c.id = :id and c.maxRedemptions is not null")
+    Optional<Long> redemptionsLeft(@Param("id") String id);
+
+    // catch-up after starting from a catalog snapshot file; inactive rows included so they can be dropped
+    List<Coupon> findByUpdatedAtGreaterThanEqual(Instant since);
+
+    @Query("select c.id from Coupon c where c.active = true")
+    List<String> findActiveIds();
+
+    /**
+     * Active coupons a cart with these products can trigger, through the indexed coupon_targets table instead
+     * of the details blobs: every CART coupon, plus PRODUCT coupons targeting one of the products and BXGY
+     * coupons giving one of them away (the same pruning as the in-memory catalog).
+     */
+    default List<Coupon> findCandidates(Collection<Long> productIds) {
+        if (productIds.isEmpty()) return findByActiveTrueAndTypeOrderByCreatedAtAscIdAsc(CouponType.CART);
+        return findCandidates(productIds, CouponType.CART, List.of(CouponTarget.Role.TARGET, CouponTarget.Role.GET));
+    }
+
+    @Query("select c from Coupon c where c.active = true and (c.type = :cartType or c.id in "
+            + "(select t.couponId from CouponTarget t where t.productId in :productIds and t.role in :roles)) "
+            + "order by c.createdAt, c.id")
+    List<Coupon> findCandidates(@Param("productIds") Collection<Long> productIds,
+                                @Param("cartType") CouponType cartType,
+                                @Param("roles") Collection<CouponTarget.Role> roles);
+
+    List<Coupon> findByActiveTrueAndTypeOrderByCreatedAtAscIdAsc(CouponType type);
+
+    // PRODUCT/BXGY coupons written before coupon_targets existed
+    @Query("select c from Coupon c where c.type <> :cartType and c.id > :afterId "
+            + "and not exists (select t from CouponTarget t where t.couponId = c.id) order by c.id")
+    List<Coupon> findWithoutTargets(@Param("cartType") CouponType cartType, @Param("afterId") String afterId,
+                                    Pageable page);
+
+    @Query("select c.code from Coupon c where c.code in :codes")
+    List<String> findExistingCodes(@Param("codes") Collection<String> codes);
+
+    // keyset pages in (createdAt, id) order, served by idx_coupons_created_id
+    @Query("select c from Coupon c order by c.createdAt, c.id")
+    List<Coupon> findFirstPage(Pageable page);
+
+    @Query("select c from Coupon c where c.createdAt > :createdAt or (c.createdAt = :createdAt and c.id > :id) "
+            + "order by c.createdAt, c.id")
+    List<Coupon> findPageAfter(@Param("createdAt") Instant createdAt, @Param("id") String id, Pageable page);
+
+    // scrolls the table with a JDBC fetch size instead of loading it; needs an open transaction. A full
+    // export would otherwise fill the second-level cache with every coupon
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE")
+    })
+    @Query("select c from Coupon c order by c.createdAt, c.id")
+    Stream<Coupon> streamAll();
+
+    // every code, for the apply-by-code Bloom filter; needs an open transaction
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select c.code from Coupon c")
+    Stream<String> streamAllCodes();
 }
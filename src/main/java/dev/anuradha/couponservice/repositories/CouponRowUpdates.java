@@ -0,0 +1,22 @@
+package dev.anuradha.couponservice.repositories;
+
+import java.time.Instant;
+import java.util.Collection;
+
+/**
+ * Conditional updates of coupon rows that go around Hibernate. A bulk JPQL update makes Hibernate drop the
+ * whole {@code coupons} second-level cache region, and redemption leases run all the time under load, so
+ * these are plain JDBC statements that evict only the cached coupons whose cached state they changed.
+ */
+public interface CouponRowUpdates {
+
+    // leases n redemptions to this node; the limit check and the increment are one statement
+    int leaseRedemptions(String id, long n);
+
+    // sets the limit unless more than that is already leased to nodes, in which case nothing changes; for the
+    // coupon update, which then saves the entity in the same transaction (and so refreshes its cache entry)
+    int limitRedemptions(String id, int maxRedemptions);
+
+    // the expiry condition keeps a concurrent extension of expiresAt from being undone
+    int deactivateExpired(Collection<String> ids, Instant now);
+}
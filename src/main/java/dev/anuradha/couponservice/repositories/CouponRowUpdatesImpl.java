@@ -0,0 +1,45 @@
+package dev.anuradha.couponservice.repositories;
+
+import dev.anuradha.couponservice.model.Coupon;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+
+@RequiredArgsConstructor
+class CouponRowUpdatesImpl implements CouponRowUpdates {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+
+    // redemptions_reserved isn't updatable from the entity and never read from it, so nothing to evict
+    @Override
+    public int leaseRedemptions(String id, long n) {
+        return jdbcTemplate.update("update coupons set redemptions_reserved = redemptions_reserved + :n "
+                        + "where id = :id and max_redemptions is not null and redemptions_reserved + :n <= max_redemptions",
+                new MapSqlParameterSource("id", id).addValue("n", n));
+    }
+
+    @Override
+    public int limitRedemptions(String id, int maxRedemptions) {
+        return jdbcTemplate.update("update coupons set max_redemptions = :max where id = :id and redemptions_reserved <= :max",
+                new MapSqlParameterSource("id", id).addValue("max", maxRedemptions));
+    }
+
+    @Override
+    public int deactivateExpired(Collection<String> ids, Instant now) {
+        int updated = jdbcTemplate.update("update coupons set is_active = false "
+                        + "where id in (:ids) and is_active = true and expires_at < :now",
+                new MapSqlParameterSource("ids", ids).addValue("now", Timestamp.from(now)));
+        if (updated > 0) {
+            Cache cache = entityManagerFactory.getCache();
+            for (String id : ids) cache.evict(Coupon.class, id);
+        }
+        return updated;
+    }
+}
@@ -0,0 +1,18 @@
+package dev.anuradha.couponservice.repositories;
+
+import dev.anuradha.couponservice.model.CouponTarget;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface CouponTargetRepository extends JpaRepository<CouponTarget, CouponTarget.Key> {
+
+    @Modifying
+    @Query("delete from CouponTarget t where t.couponId = :couponId")
+    int deleteByCouponId(@Param("couponId") String couponId);
+
+    List<CouponTarget> findByCouponId(String couponId);
+}
@@ -0,0 +1,32 @@
+package dev.anuradha.couponservice.rule;
+
+import dev.anuradha.couponservice.model.CouponType;
+
+import java.util.List;
+
+public record BxGyRule(List<Line> buyProducts,
+                       List<Line> getProducts,
+                       Integer repetitionLimit,
+                       int buyUnitsPerApply,
+                       int getUnitsPerApply) implements CouponRule {
+
+    public record Line(long productId, int quantity) {
+    }
+
+    public BxGyRule(List<Line> buyProducts, List<Line> getProducts, Integer repetitionLimit) {
+        this(List.copyOf(buyProducts), List.copyOf(getProducts), repetitionLimit,
+                units(buyProducts), units(getProducts));
+    }
+
+    // summed once here so evaluation never has to
+    private static int units(List<Line> lines) {
+        int sum = 0;
+        for (Line line : lines) sum += line.quantity();
+        return sum;
+    }
+
+    @Override
+    public CouponType type() {
+        return CouponType.BXGY;
+    }
+}
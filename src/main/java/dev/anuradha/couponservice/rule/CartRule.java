@@ -0,0 +1,25 @@
+package dev.anuradha.couponservice.rule;
+
+import dev.anuradha.couponservice.model.CouponType;
+import dev.anuradha.couponservice.util.Money;
+
+import java.math.BigDecimal;
+
+public record CartRule(BigDecimal threshold,
+                       boolean percent,          // PERCENT, otherwise FLAT
+                       BigDecimal discountValue,
+                       boolean fixedPoint,       // the micros below are exact
+                       long thresholdMicros,
+                       long discountValueMicros) implements CouponRule {
+
+    public CartRule(BigDecimal threshold, boolean percent, BigDecimal discountValue) {
+        this(threshold, percent, discountValue,
+                Money.fitsMicros(threshold) && Money.fitsMicros(discountValue),
+                Money.toMicrosOrZero(threshold), Money.toMicrosOrZero(discountValue));
+    }
+
+    @Override
+    public CouponType type() {
+        return CouponType.CART;
+    }
+}
@@ -0,0 +1,12 @@
+package dev.anuradha.couponservice.rule;
+
+import dev.anuradha.couponservice.model.CouponType;
+
+/**
+ * Parsed and validated form of a coupon's {@code details} JSON.
+ * Built once per write by {@link RuleCompiler}; evaluators only ever see this form.
+ */
+public sealed interface CouponRule permits CartRule, ProductRule, BxGyRule {
+
+    CouponType type();
+}
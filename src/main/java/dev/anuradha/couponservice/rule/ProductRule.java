@@ -0,0 +1,23 @@
+package dev.anuradha.couponservice.rule;
+
+import dev.anuradha.couponservice.model.CouponType;
+import dev.anuradha.couponservice.util.Money;
+
+import java.math.BigDecimal;
+
+public record ProductRule(long productId,
+                          boolean percent,       // PERCENT, otherwise FLAT
+                          BigDecimal discountValue,
+                          boolean fixedPoint,    // discountValueMicros is exact
+                          long discountValueMicros) implements CouponRule {
+
+    public ProductRule(long productId, boolean percent, BigDecimal discountValue) {
+        this(productId, percent, discountValue,
+                Money.fitsMicros(discountValue), Money.toMicrosOrZero(discountValue));
+    }
+
+    @Override
+    public CouponType type() {
+        return CouponType.PRODUCT;
+    }
+}
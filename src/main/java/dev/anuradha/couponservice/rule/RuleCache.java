@@ -0,0 +1,65 @@
+package dev.anuradha.couponservice.rule;
+
+import dev.anuradha.couponservice.exception.BadRequestException;
+import dev.anuradha.couponservice.metrics.CouponMetrics;
+import dev.anuradha.couponservice.model.Coupon;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiled rules keyed by coupon id. An entry is only served while the coupon's
+ * version and details still match what it was compiled from, so a coupon loaded
+ * after an update is recompiled even if nobody evicted the old entry.
+ */
+@Component
+@RequiredArgsConstructor
+public class RuleCache {
+
+    private final RuleCompiler ruleCompiler;
+    private final CouponMetrics metrics;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    // rule == null means the stored details don't compile (legacy rows); remembered so we don't re-parse
+    private record Entry(Long version, String details, CouponRule rule) {
+        boolean matches(Coupon coupon) {
+            return Objects.equals(version, coupon.getVersion()) && Objects.equals(details, coupon.getDetails());
+        }
+    }
+
+    /**
+     * Compiled rule for the coupon, or empty if its details are invalid.
+     */
+    public Optional<CouponRule> ruleFor(Coupon coupon) {
+        if (coupon.getId() == null) return Optional.ofNullable(compileQuietly(coupon));
+
+        Entry entry = entries.get(coupon.getId());
+        if (entry == null || !entry.matches(coupon)) {
+            entry = new Entry(coupon.getVersion(), coupon.getDetails(), compileQuietly(coupon));
+            entries.put(coupon.getId(), entry);
+        }
+        return Optional.ofNullable(entry.rule());
+    }
+
+    public void put(Coupon coupon, CouponRule rule) {
+        entries.put(coupon.getId(), new Entry(coupon.getVersion(), coupon.getDetails(), rule));
+    }
+
+    public void evict(String couponId) {
+        entries.remove(couponId);
+    }
+
+    private CouponRule compileQuietly(Coupon coupon) {
+        try {
+            return ruleCompiler.compile(coupon.getType(), coupon.getDetails());
+        } catch (BadRequestException ex) {
+            metrics.parseFailure();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package dev.anuradha.couponservice.rule;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.anuradha.couponservice.dto.BxGyDetailsDto;
+import dev.anuradha.couponservice.dto.CartWiseDetailsDto;
+import dev.anuradha.couponservice.dto.ProductWiseDetailsDto;
+import dev.anuradha.couponservice.exception.BadRequestException;
+import dev.anuradha.couponservice.model.CouponType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Parses and validates a coupon's details JSON into its typed {@link CouponRule}.
+ * Throws {@link BadRequestException} when the details don't satisfy the rules for the type.
+ */
+@Component
+@RequiredArgsConstructor
+public class RuleCompiler {
+
+    private final ObjectMapper objectMapper;
+
+    public CouponRule compile(CouponType type, String detailsJson) {
+        if (type == null) throw new BadRequestException("coupon type is required for validation");
+        if (detailsJson == null || detailsJson.trim().isEmpty())
+            throw new BadRequestException("details JSON is required for type " + type);
+
+        try {
+            return switch (type) {
+                case CART -> {
+                    CartWiseDetailsDto d = objectMapper.readValue(detailsJson, CartWiseDetailsDto.class);
+                    if (d.getThreshold() == null || d.getDiscountType() == null || d.getDiscountValue() == null) {
+                        throw new BadRequestException("Cart coupon requires threshold, discountType and discountValue");
+                    }
+                    yield new CartRule(d.getThreshold(), isPercent(d.getDiscountType()), d.getDiscountValue());
+                }
+                case PRODUCT -> {
+                    ProductWiseDetailsDto d = objectMapper.readValue(detailsJson, ProductWiseDetailsDto.class);
+                    if (d.getProductId() == null || d.getDiscountType() == null || d.getDiscountValue() == null) {
+                        throw new BadRequestException("Product coupon requires productId, discountType and discountValue");
+                    }
+                    yield new ProductRule(d.getProductId(), isPercent(d.getDiscountType()), d.getDiscountValue());
+                }
+                case BXGY -> {
+                    BxGyDetailsDto d = objectMapper.readValue(detailsJson, BxGyDetailsDto.class);
+                    if (d.getBuyProducts() == null || d.getBuyProducts().isEmpty()
+                            || d.getGetProducts() == null || d.getGetProducts().isEmpty()) {
+                        throw new BadRequestException("BxGy coupon requires buyProducts and getProducts");
+                    }
+                    List<BxGyRule.Line> buy = d.getBuyProducts().stream().map(bp -> {
+                        if (bp.getProductId() == null || bp.getQuantity() == null || bp.getQuantity() <= 0) {
+                            throw new BadRequestException("each buyProduct must have productId and positive quantity");
+                        }
+                        return new BxGyRule.Line(bp.getProductId(), bp.getQuantity());
+                    }).toList();
+                    List<BxGyRule.Line> get = d.getGetProducts().stream().map(gp -> {
+                        if (gp.getProductId() == null || gp.getQuantity() == null || gp.getQuantity() <= 0) {
+                            throw new BadRequestException("each getProduct must have productId and positive quantity");
+                        }
+                        return new BxGyRule.Line(gp.getProductId(), gp.getQuantity());
+                    }).toList();
+                    yield new BxGyRule(buy, get, d.getRepetitionLimit());
+                }
+            };
+        } catch (JsonProcessingException ex) {
+            throw new BadRequestException("Invalid details JSON: " + ex.getOriginalMessage());
+        }
+    }
+
+    private static boolean isPercent(String discountType) {
+        return "PERCENT".equalsIgnoreCase(discountType);
+    }
+}
@@ -0,0 +1,155 @@
+package dev.anuradha.couponservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.anuradha.couponservice.dto.ApplicableCouponDto;
+import dev.anuradha.couponservice.dto.CartDto;
+import dev.anuradha.couponservice.dto.CartItemDto;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Applicable-coupons results keyed by catalog version and cart fingerprint. Any coupon write publishes a
+ * new catalog version, and so does a coupon expiring or going live, so entries for older versions are
+ * simply never looked up again and age out.
+ * <p>
+ * Identical carts that miss at the same time are coalesced: the first caller evaluates, the others wait
+ * (for a bounded time) on its result instead of scanning the catalog again.
+ */
+@Component
+public class ApplicableCouponsCache {
+
+    private record Key(long catalogVersion, String cart) {
+    }
+
+    private final Cache<Key, List<ApplicableCouponDto>> cache;
+    private final boolean enabled;
+
+    private final Map<Key, CompletableFuture<List<ApplicableCouponDto>>> inFlight = new ConcurrentHashMap<>();
+    private final long coalesceWaitMs;
+    private final LongAdder joined = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    @Autowired
+    public ApplicableCouponsCache(@Value("${coupon.evaluation.cache.max-size:10000}") long maxSize,
+                                  @Value("${coupon.evaluation.cache.ttl-ms:30000}") long ttlMs,
+                                  @Value("${coupon.evaluation.coalesce.wait-ms:2000}") long coalesceWaitMs) {
+        this.enabled = maxSize > 0 && ttlMs > 0;
+        this.coalesceWaitMs = coalesceWaitMs;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(Math.max(maxSize, 0))
+                .expireAfterWrite(Duration.ofMillis(Math.max(ttlMs, 0)))
+                .recordStats()
+                .build();
+    }
+
+    public static ApplicableCouponsCache disabled() {
+        return new ApplicableCouponsCache(0, 0, 0);
+    }
+
+    /**
+     * Cached result for the cart under this catalog version, or null. {@code cart} is a {@link #fingerprint}.
+     */
+    List<ApplicableCouponDto> get(long catalogVersion, String cart) {
+        if (!enabled || cart == null) return null;
+        return cache.getIfPresent(new Key(catalogVersion, cart));
+    }
+
+    void put(long catalogVersion, String cart, List<ApplicableCouponDto> coupons) {
+        if (!enabled || cart == null) return;
+        cache.put(new Key(catalogVersion, cart), List.copyOf(coupons));
+    }
+
+    /**
+     * Runs {@code evaluation} unless the same cart is already being evaluated under this catalog version, in
+     * which case it waits up to {@code coalesce.wait-ms} for that result. A waiter that times out, or whose
+     * leader fails, evaluates on its own; giving up never cancels the leader's work, which other waiters may
+     * still be using. An interrupted waiter stops with a {@link CancellationException}.
+     */
+    List<ApplicableCouponDto> coalesce(long catalogVersion, String cart, Supplier<List<ApplicableCouponDto>> evaluation) {
+        if (coalesceWaitMs <= 0 || cart == null) return evaluation.get();
+
+        Key key = new Key(catalogVersion, cart);
+        CompletableFuture<List<ApplicableCouponDto>> mine = new CompletableFuture<>();
+        CompletableFuture<List<ApplicableCouponDto>> leader = inFlight.putIfAbsent(key, mine);
+        if (leader != null) {
+            try {
+                List<ApplicableCouponDto> result = leader.get(coalesceWaitMs, TimeUnit.MILLISECONDS);
+                joined.increment();
+                return result;
+            } catch (TimeoutException ex) {
+                timedOut.increment();
+            } catch (ExecutionException ex) {
+                // the leader's failure may be its own (interrupted, cancelled); let ours speak for itself
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("interrupted while waiting for an identical evaluation");
+            }
+            return evaluation.get();
+        }
+
+        try {
+            List<ApplicableCouponDto> result = evaluation.get();
+            mine.complete(List.copyOf(result));
+            return result;
+        } catch (RuntimeException | Error ex) {
+            mine.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    // callers that got another caller's result instead of evaluating
+    public long coalescedCount() {
+        return joined.sum();
+    }
+
+    // callers that gave up waiting and evaluated themselves
+    public long coalesceTimeoutCount() {
+        return timedOut.sum();
+    }
+
+    public Cache<?, ?> nativeCache() {
+        return cache;
+    }
+
+    /**
+     * Canonical form of the cart: lines ordered by product id (stable, so lines of the same product keep
+     * their order, which evaluation depends on), each as id, quantity and price with its scale. The whole
+     * string is the key, not just its hash, so two different carts can never share an entry.
+     * Null for a malformed cart, which is then evaluated (and rejected) as usual.
+     */
+    static String fingerprint(CartDto cart) {
+        if (cart == null || cart.getItems() == null) return null;
+        CartItemDto[] items = cart.getItems().toArray(new CartItemDto[0]);
+        for (CartItemDto item : items) {
+            if (item == null || item.getProductId() == null || item.getQuantity() == null || item.getPrice() == null) {
+                return null;
+            }
+        }
+        Arrays.sort(items, Comparator.comparing(CartItemDto::getProductId));
+
+        StringBuilder sb = new StringBuilder(items.length * 24);
+        for (CartItemDto item : items) {
+            sb.append(item.getProductId()).append('x').append(item.getQuantity())
+                    .append('@').append(item.getPrice()).append(';');
+        }
+        return sb.toString();
+    }
+}
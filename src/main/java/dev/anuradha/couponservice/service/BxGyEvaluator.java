@@ -1,137 +1,128 @@
 package dev.anuradha.couponservice.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import dev.anuradha.couponservice.dto.BxGyDetailsDto;
-import dev.anuradha.couponservice.dto.CartDto;
 import dev.anuradha.couponservice.dto.CartItemDto;
-import dev.anuradha.couponservice.model.Coupon;
-import lombok.RequiredArgsConstructor;
+import dev.anuradha.couponservice.rule.BxGyRule;
+import dev.anuradha.couponservice.rule.CouponRule;
+import dev.anuradha.couponservice.util.Money;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.List;
 
+/**
+ * Buy X get Y. Evaluation only reads primitive per-product aggregates from the {@link CartContext} and walks
+ * the rule's lines by index, so a coupon that gives no discount allocates nothing, and on the fixed-point
+ * path one that does allocates only its result.
+ */
 @Service
-@RequiredArgsConstructor
 public class BxGyEvaluator implements Evaluator{
 
-    private final ObjectMapper objectMapper;
-
     @Override
-    public BigDecimal evaluate(Coupon coupon, CartDto cartDto){
+    public BigDecimal evaluate(CouponRule couponRule, CartContext cart){
         // bxgy evaluation logic
-        try {
-            BxGyDetailsDto detailsDto = objectMapper
-                    .readValue(coupon.getDetails(), BxGyDetailsDto.class);
-
-            Map<Long, Integer> cartQty = cartDto.getItems().stream()
-                    .collect(Collectors.toMap(CartItemDto::getProductId,
-                            CartItemDto::getQuantity, Integer::sum));
-
-            int buyRequiredPerApply = detailsDto.getBuyProducts().stream()
-                    .mapToInt(BxGyDetailsDto.BuyProduct::getQuantity).sum();
-            if (buyRequiredPerApply <= 0) return BigDecimal.ZERO;
-
-            int totalBuyUnits = detailsDto.getBuyProducts().stream()
-                    .mapToInt(bp -> cartQty.getOrDefault(bp.getProductId(),
-                            0))
-                    .sum();
-
-            int possibleReps = totalBuyUnits / buyRequiredPerApply;
-            if (detailsDto.getRepetitionLimit() != null) {
-                possibleReps = Math.min(possibleReps, detailsDto.getRepetitionLimit());
-            }
-            if (possibleReps <= 0) return BigDecimal.ZERO;
-
-            int totalGetUnitsAvailable = detailsDto.getGetProducts().stream()
-                    .mapToInt(gp -> cartQty.getOrDefault(gp
-                            .getProductId(), 0))
-                    .sum();
-
-            int totalGetUnitsPerApply = detailsDto.getGetProducts().stream()
-                    .mapToInt(BxGyDetailsDto.GetProduct::getQuantity).sum();
-
-            int totalFreeUnits = Math.min(totalGetUnitsAvailable, possibleReps * totalGetUnitsPerApply);
-            if (totalFreeUnits <= 0) return BigDecimal.ZERO;
-
-            Map<Long, BigDecimal> priceMap = cartDto.getItems().stream()
-                    .collect(Collectors.toMap(CartItemDto::getProductId,
-                            CartItemDto::getPrice, (p1, p2) -> p1));
-
-            BigDecimal discount = BigDecimal.ZERO;
-            int remainingFree = totalFreeUnits;
-            for (BxGyDetailsDto.GetProduct gp : detailsDto.getGetProducts()) {
-                if (remainingFree <= 0) break;
-                int available = cartQty.getOrDefault(gp.getProductId(),
-                        0);
-                int toFree = Math.min(available, Math.min(gp.getQuantity() * possibleReps, remainingFree));
-                if (toFree > 0) {
-                    BigDecimal price = priceMap.getOrDefault(gp.getProductId(), BigDecimal.ZERO);
-                    discount = discount.add(price.multiply(BigDecimal.valueOf(toFree)));
-                    remainingFree -= toFree;
-                }
+        BxGyRule rule = (BxGyRule) couponRule;
+
+        int possibleReps = repetitions(rule, cart);
+        if (possibleReps <= 0) return BigDecimal.ZERO;
+
+        int totalFreeUnits = freeUnits(rule, cart, possibleReps);
+        if (totalFreeUnits <= 0) return BigDecimal.ZERO;
+
+        if (cart.fixedPoint()) {
+            try {
+                return discountFixedPoint(rule, cart, possibleReps, totalFreeUnits);
+            } catch (ArithmeticException overflow) {
+                // fall through to BigDecimal
             }
-            return discount;
-        } catch (Exception ex) {
-            return BigDecimal.ZERO;
         }
 
+        BigDecimal discount = BigDecimal.ZERO;
+        int remainingFree = totalFreeUnits;
+        List<BxGyRule.Line> getProducts = rule.getProducts();
+        for (int i = 0; i < getProducts.size() && remainingFree > 0; i++) {
+            BxGyRule.Line gp = getProducts.get(i);
+            int available = cart.quantityOf(gp.productId());
+            int toFree = Math.min(available, Math.min(gp.quantity() * possibleReps, remainingFree));
+            if (toFree > 0) {
+                BigDecimal price = cart.priceOf(gp.productId());
+                discount = discount.add(price.multiply(BigDecimal.valueOf(toFree)));
+                remainingFree -= toFree;
+            }
+        }
+        return discount;
     }
 
     @Override
-    public void apply(Coupon coupon, CartDto cart) {
-        try {
-            BxGyDetailsDto detailsDto = objectMapper.readValue(coupon.getDetails(),
-                    BxGyDetailsDto.class);
-
-            Map<Long, Integer> cartQty = cart.getItems().stream()
-                    .collect(Collectors.toMap(CartItemDto::getProductId,
-                            CartItemDto::getQuantity, Integer::sum));
-
-            int buyRequiredPerApply = detailsDto.getBuyProducts().stream()
-                    .mapToInt(BxGyDetailsDto.BuyProduct::getQuantity).sum();
-            if (buyRequiredPerApply <= 0) return;
-
-            int totalBuyUnits = detailsDto.getBuyProducts().stream()
-                    .mapToInt(bp -> cartQty.getOrDefault(bp.getProductId(),
-                            0))
-                    .sum();
-
-            int possibleReps = totalBuyUnits / buyRequiredPerApply;
-            if (detailsDto.getRepetitionLimit() != null) {
-                possibleReps = Math.min(possibleReps, detailsDto.getRepetitionLimit());
+    public void apply(CouponRule couponRule, CartContext cart) {
+        BxGyRule rule = (BxGyRule) couponRule;
+
+        int possibleReps = repetitions(rule, cart);
+        if (possibleReps <= 0) return;
+
+        int totalFreeUnits = freeUnits(rule, cart, possibleReps);
+        if (totalFreeUnits <= 0) return;
+
+        int remainingFree = totalFreeUnits;
+        List<BxGyRule.Line> getProducts = rule.getProducts();
+        for (int i = 0; i < getProducts.size() && remainingFree > 0; i++) {
+            BxGyRule.Line gp = getProducts.get(i);
+            CartItemDto item = cart.itemOf(gp.productId());
+            if (item == null) continue;
+            int toFree = Math.min(item.getQuantity(),
+                    Math.min(gp.quantity() * possibleReps, remainingFree));
+            if (toFree > 0) {
+                BigDecimal disc = item.getPrice()
+                        .multiply(BigDecimal.valueOf(toFree));
+                item.setTotalDiscount(disc);
+                remainingFree -= toFree;
             }
-            if (possibleReps <= 0) return;
-
-            int totalGetUnitsPerApply = detailsDto.getGetProducts().stream()
-                    .mapToInt(BxGyDetailsDto.GetProduct::getQuantity).sum();
-
-            int totalFreeUnits = Math.min(detailsDto.getGetProducts().stream()
-                    .mapToInt(gp -> cartQty.getOrDefault(gp.getProductId(),
-                            0)).sum(), possibleReps * totalGetUnitsPerApply);
-            if (totalFreeUnits <= 0) return;
-
-            int remainingFree = totalFreeUnits;
-            Map<Long, CartItemDto> cartItemMap = cart.getItems().stream()
-                    .collect(Collectors.toMap(CartItemDto::getProductId, i -> i,
-                            (a, b) -> a));
-
-            for (BxGyDetailsDto.GetProduct gp : detailsDto.getGetProducts()) {
-                if (remainingFree <= 0) break;
-                CartItemDto item = cartItemMap.get(gp.getProductId());
-                if (item == null) continue;
-                int toFree = Math.min(item.getQuantity(),
-                        Math.min(gp.getQuantity() * possibleReps, remainingFree));
-                if (toFree > 0) {
-                    java.math.BigDecimal disc = item.getPrice()
-                            .multiply(java.math.BigDecimal.valueOf(toFree));
-                    item.setTotalDiscount(disc);
-                    remainingFree -= toFree;
-                }
+        }
+    }
+
+    private static BigDecimal discountFixedPoint(BxGyRule rule, CartContext cart, int possibleReps, int totalFreeUnits) {
+        long discount = 0;
+        int scale = 0;
+        int remainingFree = totalFreeUnits;
+        List<BxGyRule.Line> getProducts = rule.getProducts();
+        for (int i = 0; i < getProducts.size() && remainingFree > 0; i++) {
+            BxGyRule.Line gp = getProducts.get(i);
+            int available = cart.quantityOf(gp.productId());
+            int toFree = Math.min(available, Math.min(gp.quantity() * possibleReps, remainingFree));
+            if (toFree > 0) {
+                discount = Math.addExact(discount, Math.multiplyExact(cart.priceMicrosOf(gp.productId()), (long) toFree));
+                scale = Math.max(scale, cart.priceOf(gp.productId()).scale());
+                remainingFree -= toFree;
             }
-        } catch (Exception ex) {
-            // leave discounts as zero
         }
+        // same scale the BigDecimal sum ends up with
+        return remainingFree == totalFreeUnits ? BigDecimal.ZERO : Money.fromMicros(discount).setScale(scale);
+    }
+
+    // how many times the buy side is satisfied, capped by the repetition limit
+    private static int repetitions(BxGyRule rule, CartContext cart) {
+        int buyRequiredPerApply = rule.buyUnitsPerApply();
+        if (buyRequiredPerApply <= 0) return 0;
+
+        int totalBuyUnits = 0;
+        List<BxGyRule.Line> buyProducts = rule.buyProducts();
+        for (int i = 0; i < buyProducts.size(); i++) {
+            totalBuyUnits += cart.quantityOf(buyProducts.get(i).productId());
+        }
+
+        int possibleReps = totalBuyUnits / buyRequiredPerApply;
+        if (rule.repetitionLimit() != null) {
+            possibleReps = Math.min(possibleReps, rule.repetitionLimit());
+        }
+        return possibleReps;
+    }
+
+    // get units in the cart that can be made free for that many repetitions
+    private static int freeUnits(BxGyRule rule, CartContext cart, int possibleReps) {
+        int totalGetUnitsAvailable = 0;
+        List<BxGyRule.Line> getProducts = rule.getProducts();
+        for (int i = 0; i < getProducts.size(); i++) {
+            totalGetUnitsAvailable += cart.quantityOf(getProducts.get(i).productId());
+        }
+        return Math.min(totalGetUnitsAvailable, possibleReps * rule.getUnitsPerApply());
     }
 }
@@ -0,0 +1,186 @@
+package dev.anuradha.couponservice.service;
+
+import dev.anuradha.couponservice.dto.CartDto;
+import dev.anuradha.couponservice.dto.CartItemDto;
+import dev.anuradha.couponservice.exception.BadRequestException;
+import dev.anuradha.couponservice.util.Money;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Per-request aggregates of a cart, computed once and shared by every evaluator,
+ * so evaluating N coupons costs one pass over the cart instead of N.
+ * In {@link MoneyMode#FIXED_POINT} the amounts are also kept as long micros.
+ * <p>
+ * A line missing its productId, quantity or price counts for nothing: it has a zero line total and no
+ * per-product aggregates, so coupons on the other lines still apply. The cart total is then unknown and
+ * the context is not {@link #complete()}; CART coupons evaluate to zero for it.
+ */
+public final class CartContext {
+
+    private final CartDto cart;
+    private final BigDecimal[] lineTotals;
+    private final BigDecimal total;
+    private final ProductTable products;
+    private final Set<Long> productIds;
+    private final boolean complete;
+
+    // fixed-point view, only populated when every amount fits
+    private boolean fixedPoint;
+    private long[] lineTotalMicros;
+    private long[] lineProductIds;
+    private long[] lineQuantities;
+    private long totalMicros;
+
+    private CartContext(CartDto cart) {
+        this.cart = cart;
+        List<CartItemDto> items = cart.getItems();
+        this.lineTotals = new BigDecimal[items.size()];
+        this.products = new ProductTable(items.size());
+
+        BigDecimal sum = BigDecimal.ZERO;
+        boolean allUsable = true;
+        for (int i = 0; i < items.size(); i++) {
+            CartItemDto item = items.get(i);
+            if (!usable(item)) {
+                lineTotals[i] = BigDecimal.ZERO;
+                allUsable = false;
+                continue;
+            }
+            lineTotals[i] = item.getPrice().multiply(BigDecimal.valueOf(item.getQuantity()));
+            sum = sum.add(lineTotals[i]);
+            products.add(item);
+        }
+        this.total = sum;
+        this.complete = allUsable;
+        Set<Long> ids = new LinkedHashSet<>();
+        for (int i = 0; i < products.size(); i++) ids.add(products.productId(i));
+        this.productIds = Collections.unmodifiableSet(ids);
+    }
+
+    public static CartContext of(CartDto cart) {
+        return of(cart, MoneyMode.BIG_DECIMAL);
+    }
+
+    public static CartContext of(CartDto cart, MoneyMode mode) {
+        if (cart == null || cart.getItems() == null) throw new BadRequestException("cart items are required");
+        CartContext context = new CartContext(cart);
+        // the micros view has no notion of a skipped line, so such carts stay on BigDecimal
+        if (mode == MoneyMode.FIXED_POINT && context.complete) context.toFixedPoint();
+        return context;
+    }
+
+    private static boolean usable(CartItemDto item) {
+        return item != null && item.getProductId() != null && item.getQuantity() != null && item.getPrice() != null;
+    }
+
+    private void toFixedPoint() {
+        List<CartItemDto> items = cart.getItems();
+        long[] lines = new long[items.size()];
+        long[] productIds = new long[items.size()];
+        long[] quantities = new long[items.size()];
+        long[] prices = new long[products.size()];
+        long sum = 0;
+        try {
+            for (int i = 0; i < items.size(); i++) {
+                CartItemDto item = items.get(i);
+                long price = Money.toMicros(item.getPrice());
+                productIds[i] = item.getProductId();
+                quantities[i] = item.getQuantity();
+                lines[i] = Math.multiplyExact(price, quantities[i]);
+                sum = Math.addExact(sum, lines[i]);
+                if (products.firstItem(productIds[i]) == item) prices[products.indexOf(productIds[i])] = price;
+            }
+        } catch (ArithmeticException ex) {
+            return;     // some amount doesn't fit, stay on BigDecimal
+        }
+        this.lineTotalMicros = lines;
+        this.lineProductIds = productIds;
+        this.lineQuantities = quantities;
+        this.totalMicros = sum;
+        products.priceMicros(prices);
+        this.fixedPoint = true;
+    }
+
+    public CartDto cart() {
+        return cart;
+    }
+
+    public List<CartItemDto> items() {
+        return cart.getItems();
+    }
+
+    // whether the i-th item has a productId, quantity and price; the others count for nothing
+    public boolean usable(int i) {
+        return usable(cart.getItems().get(i));
+    }
+
+    // false when some line isn't usable, so the cart total is unknown
+    public boolean complete() {
+        return complete;
+    }
+
+    // price * quantity of the i-th item, zero if it isn't usable
+    public BigDecimal lineTotal(int i) {
+        return lineTotals[i];
+    }
+
+    // of the usable lines
+    public BigDecimal total() {
+        return total;
+    }
+
+    // in order of first appearance
+    public Set<Long> productIds() {
+        return productIds;
+    }
+
+    // the lookups below don't allocate: the table is keyed by the primitive id
+
+    public int quantityOf(long productId) {
+        return products.quantity(productId);
+    }
+
+    // price of the product's first line
+    public BigDecimal priceOf(long productId) {
+        return products.price(productId);
+    }
+
+    public CartItemDto itemOf(long productId) {
+        return products.firstItem(productId);
+    }
+
+    // true when the *Micros accessors below may be used
+    public boolean fixedPoint() {
+        return fixedPoint;
+    }
+
+    public int lineCount() {
+        return lineTotalMicros.length;
+    }
+
+    public long lineTotalMicros(int i) {
+        return lineTotalMicros[i];
+    }
+
+    // unboxed copies of the i-th item's productId and quantity
+    public long lineProductId(int i) {
+        return lineProductIds[i];
+    }
+
+    public long lineQuantity(int i) {
+        return lineQuantities[i];
+    }
+
+    public long totalMicros() {
+        return totalMicros;
+    }
+
+    public long priceMicrosOf(long productId) {
+        return products.priceMicros(productId);
+    }
+}
@@ -1,66 +1,66 @@
 package dev.anuradha.couponservice.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import dev.anuradha.couponservice.dto.CartDto;
 import dev.anuradha.couponservice.dto.CartItemDto;
-import dev.anuradha.couponservice.dto.CartWiseDetailsDto;
-import dev.anuradha.couponservice.model.Coupon;
-import lombok.RequiredArgsConstructor;
+import dev.anuradha.couponservice.rule.CartRule;
+import dev.anuradha.couponservice.rule.CouponRule;
+import dev.anuradha.couponservice.util.Money;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.List;
 
 @Component
-@RequiredArgsConstructor
 public class CartWiseEvaluator implements Evaluator{
 
-    private final ObjectMapper objectMapper;
-
     @Override
-    public BigDecimal evaluate(Coupon coupon, CartDto cartDto){
+    public BigDecimal evaluate(CouponRule couponRule, CartContext cart){
         //cart-wise evaluation logic
-        try{
-            CartWiseDetailsDto detailsDto = objectMapper.readValue(
-                    coupon.getDetails(), CartWiseDetailsDto.class
-            );
-            BigDecimal total = cartDto.getItems().stream()
-                    .map(item -> item.getPrice()
-                            .multiply(BigDecimal.valueOf(item.getQuantity())))
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+        CartRule rule = (CartRule) couponRule;
+        // a line without an amount leaves the total unknown
+        if (!cart.complete()) return BigDecimal.ZERO;
+        if (cart.fixedPoint() && rule.fixedPoint()) {
+            try {
+                return evaluateFixedPoint(rule, cart);
+            } catch (ArithmeticException overflow) {
+                // fall through to BigDecimal
+            }
+        }
+        BigDecimal total = cart.total();
 
-            if (detailsDto.getThreshold() == null) return BigDecimal.ZERO;
-            if (total.compareTo(detailsDto.getThreshold()) >= 0) {
-                if ("PERCENT".equalsIgnoreCase(detailsDto.getDiscountType())) {
-                    return total.multiply(detailsDto.getDiscountValue())
-                            .divide(BigDecimal.valueOf(100), 6, RoundingMode.HALF_UP);
-                } else {
-                    return detailsDto.getDiscountValue();
-                }
+        if (total.compareTo(rule.threshold()) >= 0) {
+            if (rule.percent()) {
+                return total.multiply(rule.discountValue())
+                        .divide(BigDecimal.valueOf(100), 6, RoundingMode.HALF_UP);
+            } else {
+                return rule.discountValue();
             }
-        } catch (Exception e) {
-           // treat as non-applicable
         }
         return BigDecimal.ZERO;
     }
 
+    private static BigDecimal evaluateFixedPoint(CartRule rule, CartContext cart) {
+        long total = cart.totalMicros();
+        if (total < rule.thresholdMicros()) return BigDecimal.ZERO;
+        if (rule.percent()) {
+            return Money.fromMicros(Money.percentOf(total, rule.discountValueMicros()));
+        }
+        return rule.discountValue();
+    }
+
     @Override
-    public void apply(Coupon coupon, CartDto cartDto){
-        BigDecimal totalDiscount = evaluate(coupon, cartDto);
+    public void apply(CouponRule rule, CartContext cart){
+        BigDecimal totalDiscount = evaluate(rule, cart);
         if(totalDiscount.compareTo(BigDecimal.ZERO) <= 0)    return;
 
-        BigDecimal total = cartDto.getItems().stream()
-                .map(item -> item.getPrice()
-                        .multiply(BigDecimal.valueOf(item.getQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
+        BigDecimal total = cart.total();
         if (total.compareTo(BigDecimal.ZERO) <= 0) return;
 
-        for (CartItemDto item : cartDto.getItems()) {
-            BigDecimal itemTotal = item.getPrice().multiply(BigDecimal.valueOf(item.getQuantity()));
-            BigDecimal share = itemTotal.divide(total, 6,
+        List<CartItemDto> items = cart.items();
+        for (int i = 0; i < items.size(); i++) {
+            BigDecimal share = cart.lineTotal(i).divide(total, 6,
                     RoundingMode.HALF_UP).multiply(totalDiscount);
-            item.setTotalDiscount(share);
+            items.get(i).setTotalDiscount(share);
         }
     }
 }
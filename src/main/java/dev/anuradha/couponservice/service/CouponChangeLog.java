@@ -0,0 +1,209 @@
+package dev.anuradha.couponservice.service;
+
+import dev.anuradha.couponservice.catalog.CouponCatalog;
+import dev.anuradha.couponservice.metrics.CouponMetrics;
+import dev.anuradha.couponservice.model.Coupon;
+import dev.anuradha.couponservice.model.CouponChange;
+import dev.anuradha.couponservice.repositories.CouponChangeRepository;
+import dev.anuradha.couponservice.repositories.CouponRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceUnit;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Keeps the catalogs of several nodes coherent through the {@code coupon_changes} table. Every coupon write
+ * {@link #record records} a row in the writing transaction; every node polls the rows after the last sequence
+ * number it has seen, in batches, reloads the named coupons and applies them to its catalog in one publish.
+ * Rows this node wrote are skipped, since its catalog already has them.
+ * <p>
+ * Sequence numbers are handed out at insert but become visible at commit, so a lower one can appear after a
+ * higher one was read: an import transaction takes hundreds of them and may commit after a single write that
+ * came later. Every number skipped below the highest one read is kept as a gap and read again on each poll
+ * until its row shows up, or until {@code gap-timeout-ms} has passed; a transaction that rolled back leaves a
+ * gap that never fills. The timeout must be longer than any writing transaction can stay open, which
+ * {@code coupon.changes.writer-timeout-s} bounds.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CouponChangeLog {
+
+    private final CouponChangeRepository changeRepo;
+    private final CouponRepository repo;
+    private final CouponCatalog catalog;
+    private final CouponMetrics metrics;
+    private final CouponCodeIndex codeIndex;
+    private final JdbcTemplate jdbcTemplate;
+
+    @PersistenceUnit
+    private EntityManagerFactory entityManagerFactory;
+
+    // identifies this node's rows; random per start unless configured
+    @Value("${coupon.node-id:}")
+    private String nodeId = "";
+
+    @Value("${coupon.changes.batch-size:500}")
+    private int batchSize = 500;
+
+    // longer than coupon.changes.writer-timeout-s, so a gap is only given up once its transaction is over
+    @Value("${coupon.changes.gap-timeout-ms:120000}")
+    private long gapTimeoutMs = 120_000;
+
+    @Value("${coupon.changes.retention-ms:86400000}")
+    private long retentionMs = 86_400_000;
+
+    // a jump in the sequence larger than this (a sequence cache lost on a database restart) isn't tracked
+    private static final long MAX_GAP = 100_000;
+
+    // guarded by this
+    private long lastSeq;
+    // sequence numbers below lastSeq not read yet, with when they were first missed
+    private final NavigableMap<Long, Instant> gaps = new TreeMap<>();
+
+    @PostConstruct
+    public void init() {
+        if (nodeId == null || nodeId.isBlank()) nodeId = UUID.randomUUID().toString();
+        // the catalog has just loaded everything; transactions still open during the load logged their
+        // changes within the gap timeout, so the first poll reads (and harmlessly re-applies) that much again
+        lastSeq = changeRepo.maxSeqBefore(Instant.now().minusMillis(gapTimeoutMs));
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Logs a write to the coupon. Must run inside the writing transaction, so the row commits or rolls back
+     * with the write itself.
+     */
+    public void record(String couponId, CouponChange.Kind kind) {
+        changeRepo.save(new CouponChange(couponId, kind, nodeId, Instant.now()));
+    }
+
+    /**
+     * Logs a write to each of the coupons in one JDBC batch, for bulk writers. Hibernate can't batch inserts
+     * with an IDENTITY key, so persisting the entities would cost a round trip per row. Must run inside the
+     * writing transaction, like {@link #record}.
+     */
+    public void recordAll(Collection<String> couponIds, CouponChange.Kind kind) {
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> rows = new ArrayList<>(couponIds.size());
+        for (String id : couponIds) rows.add(new Object[]{id, kind.name(), nodeId, now});
+        jdbcTemplate.batchUpdate("insert into coupon_changes (coupon_id, kind, origin, changed_at) values (?, ?, ?, ?)", rows);
+    }
+
+    /**
+     * Applies the changes other nodes committed since the last poll: first the rows of gaps that have filled
+     * since, then the rows after the highest sequence number read, {@code batch-size} rows per query.
+     */
+    @Scheduled(fixedDelayString = "${coupon.changes.poll-ms:1000}")
+    public synchronized void poll() {
+        Instant now = Instant.now();
+        try {
+            fillGaps();
+            pollAfter(now);
+        } catch (DataAccessException ex) {
+            // nothing of the failed batch counts as read, so the next poll reads it again
+            log.warn("Could not apply coupon changes after {}: {}", lastSeq, ex.getMessage());
+        }
+        Instant giveUp = now.minusMillis(gapTimeoutMs);
+        int expired = 0;
+        for (Iterator<Instant> it = gaps.values().iterator(); it.hasNext(); ) {
+            if (it.next().isBefore(giveUp)) {
+                it.remove();
+                expired++;
+            }
+        }
+        if (expired > 0) log.debug("Gave up on {} coupon change sequence numbers (rolled back)", expired);
+    }
+
+    // number of sequence numbers below the highest read that haven't shown up yet
+    public synchronized int openGaps() {
+        return gaps.size();
+    }
+
+    private void fillGaps() {
+        List<Long> missing = new ArrayList<>(gaps.keySet());
+        for (int i = 0; i < missing.size(); i += batchSize) {
+            List<CouponChange> filled = changeRepo.findBySeqIn(missing.subList(i, Math.min(i + batchSize, missing.size())));
+            apply(filled);
+            for (CouponChange change : filled) gaps.remove(change.getSeq());
+        }
+    }
+
+    private void pollAfter(Instant now) {
+        while (true) {
+            List<CouponChange> page = changeRepo.findBySeqGreaterThanOrderBySeqAsc(lastSeq, PageRequest.of(0, batchSize));
+            apply(page);
+            for (CouponChange change : page) {
+                long skipped = change.getSeq() - lastSeq - 1;
+                if (skipped > MAX_GAP) {
+                    log.warn("Coupon change sequence jumped from {} to {}; not tracking the gap", lastSeq, change.getSeq());
+                } else {
+                    for (long seq = lastSeq + 1; seq < change.getSeq(); seq++) gaps.putIfAbsent(seq, now);
+                }
+                lastSeq = change.getSeq();
+            }
+            if (page.size() < batchSize) return;
+        }
+    }
+
+    // reloads the coupons other nodes changed into the catalog, in one publish
+    private void apply(List<CouponChange> changes) {
+        Set<String> couponIds = new LinkedHashSet<>();
+        for (CouponChange change : changes) {
+            if (!nodeId.equals(change.getOrigin())) couponIds.add(change.getCouponId());
+        }
+        if (couponIds.isEmpty()) return;
+        evictCached(couponIds);
+        List<Coupon> rows = repo.findAllById(couponIds);
+        catalog.reload(couponIds, rows);
+        for (Coupon row : rows) codeIndex.add(row.getCode());
+        Instant now = Instant.now();
+        for (CouponChange change : changes) {
+            if (!nodeId.equals(change.getOrigin())) {
+                metrics.recordChangeLag(Duration.between(change.getChangedAt(), now));
+            }
+        }
+    }
+
+    // this node's second-level cache never saw another node's write; drop what it holds for these coupons
+    private void evictCached(Collection<String> couponIds) {
+        Cache cache = entityManagerFactory.getCache();
+        for (String id : couponIds) cache.evict(Coupon.class, id);
+        cache.unwrap(org.hibernate.Cache.class).evictQueryRegion(Coupon.BY_CODE_CACHE);
+    }
+
+    // every node prunes; the delete is idempotent
+    @Scheduled(fixedDelayString = "${coupon.changes.prune-interval-ms:3600000}")
+    public void prune() {
+        try {
+            int deleted = changeRepo.deleteOlderThan(Instant.now().minusMillis(retentionMs));
+            if (deleted > 0) log.debug("Pruned {} coupon changes", deleted);
+        } catch (DataAccessException ex) {
+            log.warn("Could not prune coupon changes: {}", ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package dev.anuradha.couponservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.anuradha.couponservice.model.Coupon;
+import dev.anuradha.couponservice.repositories.CouponRepository;
+import dev.anuradha.couponservice.util.BloomFilter;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Resolves coupon codes for apply-by-code without a database query per unknown code. A Bloom filter over
+ * every code in the table answers "certainly not a coupon" for almost all made-up codes; codes it lets
+ * through are looked up in a bounded code-to-id map, and only map misses go to the database.
+ * <p>
+ * The filter holds every code ever seen, so it is never wrong about a real code, only about some unknown
+ * ones. Codes are added after the writing transaction commits (and from the bulk import and other nodes'
+ * changes); deleted and renamed codes stay in it until the next rebuild. Map entries are checked against
+ * the coupon they point to, so a stale one is dropped on use.
+ */
+@Slf4j
+@Component
+public class CouponCodeIndex {
+
+    private final CouponRepository repo;
+    private final TransactionTemplate readOnlyTx;
+
+    @Value("${coupon.codes.bloom.fpp:0.01}")
+    private double fpp = 0.01;
+
+    // the filter is sized for this many times the codes present at build, so it can take new ones
+    @Value("${coupon.codes.bloom.headroom:2}")
+    private double headroom = 2;
+
+    @Value("${coupon.codes.bloom.min-capacity:1024}")
+    private long minCapacity = 1024;
+
+    // rebuilt this often to shed deleted and renamed codes, and whenever it outgrows its capacity
+    @Value("${coupon.codes.bloom.rebuild-interval-ms:86400000}")
+    private long rebuildIntervalMs = 86_400_000;
+
+    private final Cache<String, String> idsByCode;
+
+    private volatile BloomFilter filter = BloomFilter.forCapacity(1024, 0.01);
+    private volatile Instant builtAt = Instant.EPOCH;
+    // codes added while a rebuild streams the table, replayed into the new filter; guarded by this
+    private List<String> addedDuringRebuild;
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    private final LongAdder found = new LongAdder();
+
+    @Autowired
+    public CouponCodeIndex(CouponRepository repo, PlatformTransactionManager transactionManager,
+                           @Value("${coupon.codes.cache-size:100000}") long cacheSize) {
+        this.repo = repo;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.idsByCode = Caffeine.newBuilder().maximumSize(cacheSize).build();
+    }
+
+    /**
+     * The coupon with this code, or empty. Unknown codes mostly end at the filter; the rest cost one
+     * indexed lookup.
+     */
+    public Optional<Coupon> resolve(String code) {
+        if (code == null || !filter.mightContain(code)) {
+            rejected.increment();
+            return Optional.empty();
+        }
+        String id = idsByCode.getIfPresent(code);
+        if (id != null) {
+            Optional<Coupon> coupon = repo.findById(id);
+            if (coupon.isPresent() && code.equals(coupon.get().getCode())) {
+                found.increment();
+                return coupon;
+            }
+            // deleted or renamed since it was mapped
+            idsByCode.invalidate(code);
+        }
+        Optional<Coupon> coupon = repo.findByCode(code);
+        if (coupon.isEmpty()) {
+            falsePositives.increment();
+            return Optional.empty();
+        }
+        idsByCode.put(code, coupon.get().getId());
+        found.increment();
+        return coupon;
+    }
+
+    /**
+     * Lets {@code code} through the filter once the surrounding transaction (if any) commits.
+     */
+    public void add(String code) {
+        if (code == null) return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            addNow(code);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                addNow(code);
+            }
+        });
+    }
+
+    private synchronized void addNow(String code) {
+        filter.put(code);
+        if (addedDuringRebuild != null) addedDuringRebuild.add(code);
+    }
+
+    /**
+     * Builds a new filter from every code in the table, sized for the current count, and swaps it in.
+     * Streams the codes, so memory is the filter and not the table.
+     */
+    @PostConstruct
+    public void rebuild() {
+        long started = System.nanoTime();
+        synchronized (this) {
+            addedDuringRebuild = new ArrayList<>();
+        }
+        BloomFilter fresh;
+        try {
+            long count = repo.count();
+            fresh = BloomFilter.forCapacity(Math.max(minCapacity, (long) (count * headroom)), fpp);
+            BloomFilter target = fresh;
+            readOnlyTx.executeWithoutResult(status -> {
+                try (Stream<String> codes = repo.streamAllCodes()) {
+                    codes.forEach(target::put);
+                }
+            });
+        } catch (RuntimeException ex) {
+            synchronized (this) {
+                addedDuringRebuild = null;
+            }
+            throw ex;
+        }
+        synchronized (this) {
+            for (String code : addedDuringRebuild) fresh.put(code);
+            addedDuringRebuild = null;
+            filter = fresh;
+            builtAt = Instant.now();
+        }
+        log.info("Coupon code filter built in {} ms: {} codes, {} KiB, {} hashes, expected false-positive rate {}",
+                (System.nanoTime() - started) / 1_000_000, fresh.insertions(), fresh.memoryBytes() / 1024,
+                fresh.hashCount(), String.format("%.4f", fresh.expectedFpp()));
+    }
+
+    @Scheduled(fixedDelayString = "${coupon.codes.bloom.check-interval-ms:60000}")
+    public void rebuildIfNeeded() {
+        BloomFilter current = filter;
+        boolean full = current.insertions() > current.capacity();
+        boolean old = Duration.between(builtAt, Instant.now()).toMillis() > rebuildIntervalMs;
+        if (full || old) rebuild();
+    }
+
+    // requests answered "no such code" by the filter alone
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    // codes the filter let through that turned out not to exist (or no longer exist)
+    public long falsePositiveCount() {
+        return falsePositives.sum();
+    }
+
+    public long foundCount() {
+        return found.sum();
+    }
+
+    /**
+     * Share of unknown codes the filter let through, as observed: false positives over all unknown codes.
+     */
+    public double observedFalsePositiveRate() {
+        long fp = falsePositives.sum();
+        long unknown = fp + rejected.sum();
+        return unknown == 0 ? 0 : (double) fp / unknown;
+    }
+
+    public double expectedFalsePositiveRate() {
+        return filter.expectedFpp();
+    }
+
+    public long filterMemoryBytes() {
+        return filter.memoryBytes();
+    }
+}
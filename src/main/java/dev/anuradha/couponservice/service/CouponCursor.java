@@ -0,0 +1,35 @@
+package dev.anuradha.couponservice.service;
+
+import dev.anuradha.couponservice.exception.BadRequestException;
+import dev.anuradha.couponservice.model.Coupon;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position after a coupon in (createdAt, id) order. Clients only see it as an opaque base64url token.
+ */
+record CouponCursor(Instant createdAt, String id) {
+
+    static CouponCursor after(Coupon coupon) {
+        return new CouponCursor(coupon.getCreatedAt(), coupon.getId());
+    }
+
+    String encode() {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static CouponCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int sep = raw.indexOf('|');
+            if (sep <= 0 || sep == raw.length() - 1) throw new BadRequestException("invalid cursor");
+            return new CouponCursor(Instant.parse(raw.substring(0, sep)), raw.substring(sep + 1));
+        } catch (IllegalArgumentException | DateTimeParseException ex) {
+            throw new BadRequestException("invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package dev.anuradha.couponservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.anuradha.couponservice.dto.CouponRequestDto;
+import dev.anuradha.couponservice.exception.BadRequestException;
+import dev.anuradha.couponservice.model.CouponType;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads bulk-import records one line at a time, so a body of any size is never held in memory.
+ * A line that can't be read becomes a record with an error instead of failing the import.
+ */
+public abstract class CouponImportReader implements Iterator<CouponImportReader.Line> {
+
+    /**
+     * One input record: its 1-based line number and either the coupon or why it couldn't be read.
+     */
+    public record Line(long number, CouponRequestDto coupon, String error) {
+    }
+
+    private final BufferedReader reader;
+    private long lineNumber;
+    private Line next;
+
+    protected CouponImportReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * One JSON object per line: {@code code}, {@code type}, {@code details} (a JSON string or object),
+     * optional {@code active} (default true), {@code startsAt}, {@code expiresAt}, {@code maxRedemptions} and
+     * {@code maxRedemptionsPerCustomer}.
+     */
+    public static CouponImportReader ndjson(BufferedReader reader, ObjectMapper objectMapper) {
+        return new CouponImportReader(reader) {
+            @Override
+            protected CouponRequestDto parse(String line) {
+                JsonNode node;
+                try {
+                    node = objectMapper.readTree(line);
+                } catch (JsonProcessingException e) {
+                    throw new IllegalArgumentException("invalid JSON");
+                }
+                if (!node.isObject()) throw new IllegalArgumentException("expected a JSON object");
+                JsonNode details = node.get("details");
+                return coupon(text(node.get("code")), text(node.get("type")),
+                        details == null || details.isNull() ? null : details.isTextual() ? details.asText() : details.toString(),
+                        node.path("active").asBoolean(true), text(node.get("startsAt")), text(node.get("expiresAt")),
+                        text(node.get("maxRedemptions")), text(node.get("maxRedemptionsPerCustomer")));
+            }
+        };
+    }
+
+    /**
+     * A header line naming the columns ({@code code,type,details} and any of
+     * {@code active,startsAt,expiresAt,maxRedemptions,maxRedemptionsPerCustomer}), then one record per line.
+     * Fields containing commas or quotes (such as the details JSON) are quoted, with quotes doubled.
+     */
+    public static CouponImportReader csv(BufferedReader reader) {
+        return new CouponImportReader(reader) {
+            private Map<String, Integer> columns;
+
+            @Override
+            protected CouponRequestDto parse(String line) {
+                List<String> fields = splitCsv(line);
+                if (columns == null) {
+                    columns = new HashMap<>();
+                    for (int i = 0; i < fields.size(); i++) columns.put(fields.get(i).trim().toLowerCase(Locale.ROOT), i);
+                    for (String required : List.of("code", "type", "details")) {
+                        if (!columns.containsKey(required)) {
+                            // nothing after a bad header can be read, so this fails the whole import
+                            throw new BadRequestException("CSV header is missing column " + required);
+                        }
+                    }
+                    return null;
+                }
+                String active = field(fields, "active");
+                return coupon(field(fields, "code"), field(fields, "type"), field(fields, "details"),
+                        active == null || active.isBlank() || Boolean.parseBoolean(active.trim()),
+                        field(fields, "startsat"), field(fields, "expiresat"), field(fields, "maxredemptions"),
+                        field(fields, "maxredemptionspercustomer"));
+            }
+
+            private String field(List<String> fields, String column) {
+                Integer idx = columns.get(column);
+                return idx == null || idx >= fields.size() ? null : fields.get(idx);
+            }
+        };
+    }
+
+    /**
+     * The coupon on {@code line}, or null if the line carries no record (e.g. a CSV header).
+     *
+     * @throws IllegalArgumentException with a message for the error report if the line is malformed
+     */
+    protected abstract CouponRequestDto parse(String line);
+
+    @Override
+    public boolean hasNext() {
+        while (next == null) {
+            String line;
+            try {
+                line = reader.readLine();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (line == null) return false;
+            lineNumber++;
+            if (line.isBlank()) continue;
+            try {
+                CouponRequestDto coupon = parse(line);
+                if (coupon != null) next = new Line(lineNumber, coupon, null);
+            } catch (IllegalArgumentException e) {
+                next = new Line(lineNumber, null, e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Line next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        Line line = next;
+        next = null;
+        return line;
+    }
+
+    private static CouponRequestDto coupon(String code, String type, String details, boolean active, String startsAt,
+                                           String expiresAt, String maxRedemptions, String maxRedemptionsPerCustomer) {
+        CouponType couponType = null;
+        if (type != null && !type.isBlank()) {
+            try {
+                couponType = CouponType.valueOf(type.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("invalid coupon type: " + type);
+            }
+        }
+        return new CouponRequestDto(code == null ? null : code.trim(), couponType, details, active,
+                instant("startsAt", startsAt), instant("expiresAt", expiresAt),
+                limit("maxRedemptions", maxRedemptions), limit("maxRedemptionsPerCustomer", maxRedemptionsPerCustomer));
+    }
+
+    private static Instant instant(String name, String value) {
+        if (value == null || value.isBlank()) return null;
+        try {
+            return Instant.parse(value.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("invalid " + name + ": " + value);
+        }
+    }
+
+    private static Integer limit(String name, String value) {
+        if (value == null || value.isBlank()) return null;
+        try {
+            return Integer.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid " + name + ": " + value);
+        }
+    }
+
+    private static String text(JsonNode node) {
+        return node == null || node.isNull() ? null : node.asText();
+    }
+
+    // RFC 4180 fields on a single line
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) throw new IllegalArgumentException("unterminated quoted field");
+        fields.add(field.toString());
+        return fields;
+    }
+}
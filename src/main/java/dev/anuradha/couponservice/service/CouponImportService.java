@@ -0,0 +1,173 @@
+package dev.anuradha.couponservice.service;
+
+import dev.anuradha.couponservice.catalog.CouponCatalog;
+import dev.anuradha.couponservice.dto.CouponImportErrorDto;
+import dev.anuradha.couponservice.dto.CouponImportResultDto;
+import dev.anuradha.couponservice.dto.CouponMapper;
+import dev.anuradha.couponservice.exception.BadRequestException;
+import dev.anuradha.couponservice.model.Coupon;
+import dev.anuradha.couponservice.model.CouponChange;
+import dev.anuradha.couponservice.model.CouponTarget;
+import dev.anuradha.couponservice.repositories.CouponRepository;
+import dev.anuradha.couponservice.rule.CouponRule;
+import dev.anuradha.couponservice.rule.RuleCache;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Bulk coupon import. Records are validated exactly like {@link CouponService#create}, persisted in
+ * JDBC batches of {@code coupon.import.batch-size} (one transaction per batch, which works because ids
+ * are client-assigned UUIDs) and the catalog is refreshed once at the end instead of once per row.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CouponImportService {
+
+    private final CouponService couponService;
+    private final CouponMapper couponMapper;
+    private final CouponRepository repo;
+    private final RuleCache ruleCache;
+    private final CouponCatalog catalog;
+    private final CouponChangeLog changeLog;
+    private final CouponCodeIndex codeIndex;
+    private final PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // keep in step with spring.jpa.properties.hibernate.jdbc.batch_size
+    @Value("${coupon.import.batch-size:500}")
+    private int batchSize = 500;
+
+    @Value("${coupon.import.max-reported-errors:1000}")
+    private int maxReportedErrors = 1000;
+
+    // batches log coupon_changes rows, so they are bounded like every other writer (see CouponChangeLog)
+    @Value("${coupon.changes.writer-timeout-s:30}")
+    private int writerTimeoutSeconds = 30;
+
+    private record Pending(long line, Coupon coupon, CouponRule rule) {
+    }
+
+    private static final class Report {
+        long imported;
+        long failed;
+        final List<CouponImportErrorDto> errors = new ArrayList<>();
+    }
+
+    public CouponImportResultDto importCoupons(Iterator<CouponImportReader.Line> lines) {
+        Report report = new Report();
+        // codes taken earlier in this import; the database is checked once per batch
+        Set<String> codes = new HashSet<>();
+        List<Pending> batch = new ArrayList<>(batchSize);
+
+        while (lines.hasNext()) {
+            CouponImportReader.Line line = lines.next();
+            if (line.error() != null) {
+                reject(report, line.number(), null, line.error());
+                continue;
+            }
+            Coupon coupon = couponMapper.toEntity(line.coupon());
+            if (coupon.getCode() == null || coupon.getCode().isBlank()) {
+                reject(report, line.number(), null, "code is required");
+                continue;
+            }
+            if (!codes.add(coupon.getCode())) {
+                reject(report, line.number(), coupon.getCode(), "duplicate code in this import");
+                continue;
+            }
+            CouponRule rule;
+            try {
+                rule = couponService.prepare(coupon);
+            } catch (BadRequestException | IllegalArgumentException ex) {
+                reject(report, line.number(), coupon.getCode(), ex.getMessage());
+                continue;
+            }
+            batch.add(new Pending(line.number(), coupon, rule));
+            if (batch.size() >= batchSize) {
+                write(batch, report);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) write(batch, report);
+
+        if (report.imported > 0) catalog.refresh();
+        log.info("Coupon import: {} imported, {} rejected", report.imported, report.failed);
+        return new CouponImportResultDto(report.imported, report.failed, report.errors);
+    }
+
+    private void write(List<Pending> batch, Report report) {
+        Set<String> existing = new HashSet<>(repo.findExistingCodes(batch.stream().map(p -> p.coupon().getCode()).toList()));
+        List<Pending> insert = new ArrayList<>(batch.size());
+        for (Pending p : batch) {
+            if (existing.contains(p.coupon().getCode())) {
+                reject(report, p.line(), p.coupon().getCode(), "code already exists");
+            } else {
+                insert.add(p);
+            }
+        }
+        if (insert.isEmpty()) return;
+
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setTimeout(writerTimeoutSeconds);
+        try {
+            tx.executeWithoutResult(status -> persist(insert));
+            insert.forEach(p -> {
+                ruleCache.put(p.coupon(), p.rule());
+                codeIndex.add(p.coupon().getCode());
+            });
+            report.imported += insert.size();
+        } catch (DataAccessException | PersistenceException ex) {
+            // one bad row (e.g. a code created concurrently) rolls back the batch: redo it row by row to find it
+            for (Pending p : insert) {
+                p.coupon().setVersion(null);
+                try {
+                    tx.executeWithoutResult(status -> persist(List.of(p)));
+                    ruleCache.put(p.coupon(), p.rule());
+                    codeIndex.add(p.coupon().getCode());
+                    report.imported++;
+                } catch (DataAccessException | PersistenceException rowEx) {
+                    reject(report, p.line(), p.coupon().getCode(),
+                            "could not be saved: " + NestedExceptionUtils.getMostSpecificCause(rowEx).getMessage());
+                }
+            }
+        }
+    }
+
+    private void persist(List<Pending> batch) {
+        List<String> ids = new ArrayList<>(batch.size());
+        for (Pending p : batch) {
+            entityManager.persist(p.coupon());
+            CouponTarget.of(p.coupon().getId(), p.rule()).forEach(entityManager::persist);
+            ids.add(p.coupon().getId());
+        }
+        entityManager.flush();
+        // same transaction and connection, one more batch
+        changeLog.recordAll(ids, CouponChange.Kind.UPSERT);
+        // nothing is read back, so don't let the persistence context grow across batches
+        entityManager.clear();
+    }
+
+    private void reject(Report report, long line, String code, String error) {
+        report.failed++;
+        if (report.errors.size() < maxReportedErrors) {
+            report.errors.add(new CouponImportErrorDto(line, code, error));
+        }
+    }
+}
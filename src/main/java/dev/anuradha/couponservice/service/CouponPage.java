@@ -0,0 +1,11 @@
+package dev.anuradha.couponservice.service;
+
+import dev.anuradha.couponservice.model.Coupon;
+
+import java.util.List;
+
+/**
+ * A keyset page of coupons and the cursor of the next one, or null when this is the last page.
+ */
+public record CouponPage(List<Coupon> coupons, String nextCursor) {
+}
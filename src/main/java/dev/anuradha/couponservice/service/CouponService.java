@@ -2,20 +2,44 @@ package dev.anuradha.couponservice.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.anuradha.couponservice.catalog.CatalogSnapshot;
+import dev.anuradha.couponservice.catalog.ColumnarRules;
+import dev.anuradha.couponservice.catalog.CompiledCoupon;
+import dev.anuradha.couponservice.catalog.CouponCatalog;
 import dev.anuradha.couponservice.dto.*;
 import dev.anuradha.couponservice.exception.BadRequestException;
+import dev.anuradha.couponservice.metrics.CouponMetrics;
 import dev.anuradha.couponservice.model.Coupon;
+import dev.anuradha.couponservice.model.CouponChange;
 import dev.anuradha.couponservice.model.CouponType;
+import dev.anuradha.couponservice.model.CouponTarget;
 import dev.anuradha.couponservice.repositories.CouponRepository;
+import dev.anuradha.couponservice.repositories.CouponTargetRepository;
+import dev.anuradha.couponservice.rule.CouponRule;
+import dev.anuradha.couponservice.rule.RuleCache;
+import dev.anuradha.couponservice.rule.RuleCompiler;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -24,133 +48,242 @@ public class CouponService {
     private final Map<CouponType, Evaluator> evaluatorMap;
 
     private final CouponRepository repo;
+    private final CouponTargetRepository targetRepo;
     private final ObjectMapper objectMapper;
+    private final RuleCompiler ruleCompiler;
+    private final RuleCache ruleCache;
+    private final CouponCatalog catalog;
+
+    private final ForkJoinPool evaluationPool;
+    private final CouponMetrics metrics;
+    private final ApplicableCouponsCache resultCache;
+    private final CouponChangeLog changeLog;
+    private final CouponCodeIndex codeIndex;
+
+    @Value("${coupon.evaluation.money-mode:BIG_DECIMAL}")
+    private MoneyMode moneyMode = MoneyMode.BIG_DECIMAL;
+
+    @Value("${coupon.evaluation.engine:EVALUATORS}")
+    private EvaluationEngine engine = EvaluationEngine.EVALUATORS;
+
+    @Value("${coupon.batch.max-size:1000}")
+    private int maxBatchSize = 1000;
+
+    // candidate count from which a single cart is evaluated in parallel chunks
+    @Value("${coupon.evaluation.parallel-threshold:20000}")
+    private int parallelThreshold = 20000;
+
+    @Value("${coupon.evaluation.parallel-chunk-size:2048}")
+    private int parallelChunkSize = 2048;
+
+    @Value("${coupon.list.default-page-size:100}")
+    private int defaultPageSize = 100;
+
+    @Value("${coupon.list.max-page-size:1000}")
+    private int maxPageSize = 1000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
 
     // CRUD & validation
 
+    @Transactional(timeoutString = "${coupon.changes.writer-timeout-s:30}")
     public Coupon create(Coupon coupon) {
+        CouponRule rule = prepare(coupon);
+
+        Coupon saved = repo.save(coupon);
+        targetRepo.saveAll(CouponTarget.of(saved.getId(), rule));
+        changeLog.record(saved.getId(), CouponChange.Kind.UPSERT);
+        codeIndex.add(saved.getCode());
+        ruleCache.put(saved, rule);
+        catalog.upsert(saved);
+        return saved;
+
+    }
+
+    /**
+     * Normalizes legacy details and validates the coupon for creation, returning its compiled rule.
+     * Shared by {@link #create} and the bulk import so both accept exactly the same coupons.
+     */
+    public CouponRule prepare(Coupon coupon) {
         try {
             String raw = coupon.getDetails();
             if (raw != null && !raw.isBlank()) {
-                JsonNode node = objectMapper.readTree(raw);
-                if (node.has("discount") && !node.has("discountValue")) {
-                    ObjectNode obj = (ObjectNode) node;
-                    obj.put("discountType", "PERCENT");
-                    obj.set("discountValue", obj.get("discount"));
-                    obj.remove("discount");
-                    coupon.setDetails(objectMapper.writeValueAsString(obj));
-                }
+                coupon.setDetails(normalizeDetails(raw));
             }
         } catch (Exception e) {
             throw new IllegalArgumentException("Invalid details JSON", e);
         }
+        return validateCouponDetailsForCreate(coupon);
+    }
 
-        return repo.save(coupon);
+    /**
+     * Keyset page of coupons in (createdAt, id) order, starting after {@code cursor} (null for the first page).
+     * Each page is one indexed range scan, however deep into the table it is.
+     */
+    public CouponPage listPage(String cursor, Integer limit) {
+        int size = limit == null ? defaultPageSize : limit;
+        if (size <= 0 || size > maxPageSize) {
+            throw new BadRequestException("limit must be between 1 and " + maxPageSize);
+        }
+        // one extra row tells us whether there is a next page
+        Pageable page = PageRequest.of(0, size + 1);
+        List<Coupon> coupons;
+        if (cursor == null || cursor.isBlank()) {
+            coupons = repo.findFirstPage(page);
+        } else {
+            CouponCursor after = CouponCursor.decode(cursor);
+            coupons = repo.findPageAfter(after.createdAt(), after.id(), page);
+        }
+        if (coupons.size() <= size) return new CouponPage(coupons, null);
 
+        List<Coupon> items = coupons.subList(0, size);
+        return new CouponPage(items, CouponCursor.after(items.get(size - 1)).encode());
     }
 
-    public List<Coupon> listAll() {
-        return repo.findAll();
+    /**
+     * Hands every coupon to {@code action} in (createdAt, id) order while scrolling the result set, detaching
+     * each one afterwards so memory stays flat regardless of table size.
+     */
+    @Transactional(readOnly = true)
+    public void forEachCoupon(Consumer<Coupon> action) {
+        // rows come off the open cursor after the query's own cache mode is gone, so the session's is what keeps
+        // them out of the second-level cache
+        Session session = entityManager.unwrap(Session.class);
+        CacheMode previous = session.getCacheMode();
+        session.setCacheMode(CacheMode.IGNORE);
+        try (Stream<Coupon> coupons = repo.streamAll()) {
+            coupons.forEach(coupon -> {
+                action.accept(coupon);
+                entityManager.detach(coupon);
+            });
+        } finally {
+            session.setCacheMode(previous);
+        }
     }
 
     public Optional<Coupon> findById(String id) {
         return repo.findById(id);
     }
 
-    @Transactional
+
+
+    @Transactional(timeoutString = "${coupon.changes.writer-timeout-s:30}")
     public Optional<Coupon> update(String id, UpdateCouponDto couponDto) {
         return repo.findById(id).map(existing -> {
             if (couponDto.getCode() != null) existing.setCode(couponDto.getCode());
             if (couponDto.getType() != null) existing.setType(CouponType
                     .valueOf(couponDto.getType()));
             if (couponDto.getDetails() != null) {
-                String raw = couponDto.getDetails();
                 try {
-                    JsonNode node = objectMapper.readTree(raw);
-                    if (node.has("discount") && !node.has("discountValue")) {
-                        ObjectNode obj = (ObjectNode) node;
-                        obj.put("discountType", "PERCENT");
-                        obj.set("discountValue", obj.get("discount"));
-                        obj.remove("discount");
-                        raw = objectMapper.writeValueAsString(obj);
-                    }
+                    existing.setDetails(normalizeDetails(couponDto.getDetails()));
                 } catch (Exception e) {
                     throw new IllegalArgumentException("Invalid details JSON", e);
                 }
-                existing.setDetails(raw);
             }
             if (couponDto.getActive() != null) existing.setActive(couponDto.getActive());
+            if (couponDto.getStartsAt() != null) existing.setStartsAt(couponDto.getStartsAt());
             if (couponDto.getExpiresAt() != null) existing.setExpiresAt(couponDto.getExpiresAt());
+            if (couponDto.getMaxRedemptions() != null) existing.setMaxRedemptions(couponDto.getMaxRedemptions());
+            if (couponDto.getMaxRedemptionsPerCustomer() != null) {
+                existing.setMaxRedemptionsPerCustomer(couponDto.getMaxRedemptionsPerCustomer());
+            }
+            validateLimits(existing);
+            validateSchedule(existing);
+            // nodes spend what they leased without asking again, so the limit can't drop below it; the
+            // conditional update also locks the row against new leases until this transaction ends
+            if (couponDto.getMaxRedemptions() != null && repo.limitRedemptions(id, couponDto.getMaxRedemptions()) == 0) {
+                throw new BadRequestException("maxRedemptions can't be lower than the redemptions already reserved");
+            }
 
-            return repo.save(existing);
+            // re-check the rule only when something it depends on changed
+            CouponRule rule = null;
+            if (couponDto.getType() != null || couponDto.getDetails() != null) {
+                rule = validateCouponDetailsForUpdate(existing.getType(), existing.getDetails());
+            }
+            existing.setUpdatedAt(Instant.now());
+
+            // flush so the bumped version is visible before we key the compiled rule on it
+            Coupon saved = repo.saveAndFlush(existing);
+            if (rule != null) {
+                ruleCache.put(saved, rule);
+                targetRepo.deleteByCouponId(saved.getId());
+                targetRepo.saveAll(CouponTarget.of(saved.getId(), rule));
+            } else {
+                ruleCache.evict(saved.getId());
+            }
+            changeLog.record(saved.getId(), CouponChange.Kind.UPSERT);
+            if (couponDto.getCode() != null) codeIndex.add(saved.getCode());
+            catalog.upsert(saved);
+            return saved;
         });
     }
 
+    @Transactional(timeoutString = "${coupon.changes.writer-timeout-s:30}")
     public void delete(String id) {
+        targetRepo.deleteByCouponId(id);
         repo.deleteById(id);
+        changeLog.record(id, CouponChange.Kind.DELETE);
+        ruleCache.evict(id);
+        catalog.remove(id);
+    }
+
+    // legacy payloads send "discount"; store them as a PERCENT discountValue
+    private String normalizeDetails(String raw) throws JsonProcessingException {
+        JsonNode node = objectMapper.readTree(raw);
+        if (node.has("discount") && !node.has("discountValue")) {
+            ObjectNode obj = (ObjectNode) node;
+            obj.put("discountType", "PERCENT");
+            obj.set("discountValue", obj.get("discount"));
+            obj.remove("discount");
+            return objectMapper.writeValueAsString(obj);
+        }
+        return raw;
     }
 
 
     // Validation helpers
-    private void validateCouponDetailsForCreate(Coupon coupon) {
+    private CouponRule validateCouponDetailsForCreate(Coupon coupon) {
         if (coupon == null) throw new BadRequestException("coupon is required");
         if (coupon.getType() == null) throw new BadRequestException("coupon.type is required");
+        validateLimits(coupon);
+        validateSchedule(coupon);
         if (coupon.getDetails() == null || coupon.getDetails().trim().isEmpty()) {
             throw new BadRequestException("details JSON is required for coupon type " + coupon.getType());
         }
-        validateDetailsForType(coupon.getType(), coupon.getDetails());
+        return validateDetailsForType(coupon.getType(), coupon.getDetails());
     }
 
-    private void validateCouponDetailsForUpdate(CouponType type, String details) {
-        if (type == null) return;
-        if (details == null || details.trim().isEmpty()) {
-            // allow missing details on update (we'll keep existing details)
-            return;
+    private void validateLimits(Coupon coupon) {
+        if (coupon.getMaxRedemptions() != null && coupon.getMaxRedemptions() < 0) {
+            throw new BadRequestException("maxRedemptions must be >= 0");
+        }
+        if (coupon.getMaxRedemptionsPerCustomer() != null && coupon.getMaxRedemptionsPerCustomer() < 0) {
+            throw new BadRequestException("maxRedemptionsPerCustomer must be >= 0");
         }
-        validateDetailsForType(type, details);
     }
 
-    private void validateDetailsForType(CouponType type, String detailsJson) {
-        if (type == null) throw new BadRequestException("coupon type is required for validation");
-        if (detailsJson == null || detailsJson.trim().isEmpty())
-            throw new BadRequestException("details JSON is required for type " + type);
+    private void validateSchedule(Coupon coupon) {
+        if (coupon.getStartsAt() != null && coupon.getExpiresAt() != null
+                && !coupon.getStartsAt().isBefore(coupon.getExpiresAt())) {
+            throw new BadRequestException("startsAt must be before expiresAt");
+        }
+    }
 
-        try {
-            switch (type) {
-                case CART -> {
-                    CartWiseDetailsDto d = objectMapper.readValue(detailsJson, CartWiseDetailsDto.class);
-                    if (d.getThreshold() == null || d.getDiscountType() == null || d.getDiscountValue() == null) {
-                        throw new BadRequestException("Cart coupon requires threshold, discountType and discountValue");
-                    }
-                }
-                case PRODUCT -> {
-                    ProductWiseDetailsDto d = objectMapper.readValue(detailsJson, ProductWiseDetailsDto.class);
-                    if (d.getProductId() == null || d.getDiscountType() == null || d.getDiscountValue() == null) {
-                        throw new BadRequestException("Product coupon requires productId, discountType and discountValue");
-                    }
-                }
-                case BXGY -> {
-                    BxGyDetailsDto d = objectMapper.readValue(detailsJson, BxGyDetailsDto.class);
-                    if (d.getBuyProducts() == null || d.getBuyProducts().isEmpty()
-                            || d.getGetProducts() == null || d.getGetProducts().isEmpty()) {
-                        throw new BadRequestException("BxGy coupon requires buyProducts and getProducts");
-                    }
-                    d.getBuyProducts().forEach(bp -> {
-                        if (bp.getProductId() == null || bp.getQuantity() == null || bp.getQuantity() <= 0) {
-                            throw new BadRequestException("each buyProduct must have productId and positive quantity");
-                        }
-                    });
-                    d.getGetProducts().forEach(gp -> {
-                        if (gp.getProductId() == null || gp.getQuantity() == null || gp.getQuantity() <= 0) {
-                            throw new BadRequestException("each getProduct must have productId and positive quantity");
-                        }
-                    });
-                }
-                default -> throw new BadRequestException("Unknown coupon type: " + type);
-            }
-        } catch (JsonProcessingException ex) {
-            throw new BadRequestException("Invalid details JSON: " + ex.getOriginalMessage());
+    private CouponRule validateCouponDetailsForUpdate(CouponType type, String details) {
+        if (type == null) return null;
+        if (details == null || details.trim().isEmpty()) {
+            // allow missing details on update (we'll keep existing details)
+            return null;
         }
+        return validateDetailsForType(type, details);
+    }
+
+    /**
+     * Validates the details for the type and returns the compiled rule, so callers parse the JSON only once.
+     */
+    private CouponRule validateDetailsForType(CouponType type, String detailsJson) {
+        return ruleCompiler.compile(type, detailsJson);
     }
 
 
@@ -162,8 +295,7 @@ public class CouponService {
     public BigDecimal evaluateDiscountForCoupon(Coupon coupon, CartDto cart) {
         if (coupon == null) return BigDecimal.ZERO;
         if (!coupon.isActive()) return BigDecimal.ZERO;
-        if (coupon.getExpiresAt() != null && coupon.getExpiresAt().isBefore(Instant.now()))
-            return BigDecimal.ZERO;
+        if (!isLive(coupon, Instant.now())) return BigDecimal.ZERO;
 
         if (coupon.getType() == null) return BigDecimal.ZERO;
 
@@ -173,31 +305,177 @@ public class CouponService {
             return BigDecimal.ZERO;
         }
 
+        CouponRule rule = ruleCache.ruleFor(coupon).orElse(null);
+        if (rule == null) return BigDecimal.ZERO;
+
+        CartContext context;
         try {
-            return Optional.ofNullable(evaluator.evaluate(coupon, cart))
-                    .orElse(BigDecimal.ZERO);
-        } catch (Exception ex) {
+            context = CartContext.of(cart);
+        } catch (BadRequestException ex) {
             return BigDecimal.ZERO;
         }
+        return evaluate(evaluator, coupon.getType(), rule, context);
+    }
+
+    /**
+     * Return all coupons that produce a discount > 0 for the cart, in catalog order, with their metadata.
+     * Runs against the in-memory catalog snapshot; no database access. Until the catalog has been loaded
+     * (see {@code coupon.catalog.preload}) candidates come from one indexed query instead.
+     */
+
+    public List<ApplicableCouponDto> applicableCouponsForCart(CartDto cart) {
+        if (!catalog.isLoaded()) return applicableCouponsFromDatabase(cart);
+        return applicableCouponsForCart(cart, catalog.snapshot(Instant.now()));
     }
 
     /**
-     * Return map of couponId -> discount for all coupons that produce a discount > 0 for the cart.
+     * Applicable coupons for many carts, evaluated in parallel on the evaluation pool against a
+     * single catalog snapshot. Evaluation only reads the carts, so they can be shared across threads;
+     * a cart that fails gets an error entry instead of failing the batch.
      */
+    public List<BatchCartResultDto> applicableCouponsForCarts(List<CartDto> carts) {
+        if (carts == null || carts.isEmpty()) throw new BadRequestException("carts are required");
+        if (carts.size() > maxBatchSize) {
+            throw new BadRequestException("batch of " + carts.size() + " carts exceeds the limit of " + maxBatchSize);
+        }
+
+        boolean loaded = catalog.isLoaded();
+        CatalogSnapshot snapshot = catalog.snapshot(Instant.now());
+        return evaluationPool.submit(() -> IntStream.range(0, carts.size())
+                        .parallel()
+                        .mapToObj(i -> {
+                            try {
+                                return BatchCartResultDto.ok(i, loaded
+                                        ? applicableCouponsForCart(carts.get(i), snapshot)
+                                        : applicableCouponsFromDatabase(carts.get(i)));
+                            } catch (Exception ex) {
+                                return BatchCartResultDto.failed(i, ex.getMessage());
+                            }
+                        })
+                        .toList())
+                .join();
+    }
+
+    // only the coupons coupon_targets ties to the cart's products, plus CART coupons, in creation order
+    private List<ApplicableCouponDto> applicableCouponsFromDatabase(CartDto cart) {
+        CartContext context = CartContext.of(cart, moneyMode);
+        Instant now = Instant.now();
+        List<Coupon> candidates = repo.findCandidates(context.productIds());
+        List<ApplicableCouponDto> result = new ArrayList<>();
+        for (Coupon coupon : candidates) {
+            if (!isLive(coupon, now)) continue;
+            Evaluator evaluator = evaluatorMap.get(coupon.getType());
+            CouponRule rule = ruleCache.ruleFor(coupon).orElse(null);
+            if (evaluator == null || rule == null) continue;
+            BigDecimal d = evaluate(evaluator, coupon.getType(), rule, context);
+            if (d.compareTo(BigDecimal.ZERO) > 0) {
+                result.add(new ApplicableCouponDto(coupon.getId(), coupon.getCode(), coupon.getType(), d));
+            }
+        }
+        metrics.recordRequest(candidates.size(), result.size());
+        return result;
+    }
+
+    // the snapshot only holds coupons live at the time it was taken, so nothing here checks dates
+    private List<ApplicableCouponDto> applicableCouponsForCart(CartDto cart, CatalogSnapshot snapshot) {
+        // a view with expired coupons filtered out shares its version with the published snapshot; not cached
+        String fingerprint = snapshot.isPublished() ? ApplicableCouponsCache.fingerprint(cart) : null;
+        List<ApplicableCouponDto> cached = resultCache.get(snapshot.version(), fingerprint);
+        if (cached != null) return cached;
+
+        return resultCache.coalesce(snapshot.version(), fingerprint,
+                () -> evaluateAndCache(cart, snapshot, fingerprint));
+    }
 
-    public Map<String, BigDecimal> applicableCouponsForCart(CartDto cart) {
-        List<Coupon> coupons = repo.findAll();
+    private List<ApplicableCouponDto> evaluateAndCache(CartDto cart, CatalogSnapshot snapshot, String fingerprint) {
+        // the columnar engine works on micros; its results are the same as BigDecimal's, so this doesn't show
+        CartContext context = CartContext.of(cart, engine == EvaluationEngine.COLUMNAR ? MoneyMode.FIXED_POINT : moneyMode);
+        int[] candidates = snapshot.candidates(context);
+
+        List<ApplicableCouponDto> result;
+        if (candidates.length >= parallelThreshold) {
+            EvaluationTask task = new EvaluationTask(snapshot, context, candidates, 0, candidates.length);
+            // already on the pool (batch requests): run inline so we don't block a worker on a nested submit
+            result = ForkJoinTask.getPool() == evaluationPool ? task.invoke() : evaluationPool.invoke(task);
+        } else {
+            result = evaluateRange(snapshot, context, candidates, 0, candidates.length);
+        }
+        metrics.recordRequest(candidates.length, result.size());
+        resultCache.put(snapshot.version(), fingerprint, result);
+        return result;
+    }
 
-        Map<String, BigDecimal> result = new LinkedHashMap<>();
-        for (Coupon coupon : coupons) {
-            BigDecimal d = evaluateDiscountForCoupon(coupon, cart);
+    private List<ApplicableCouponDto> evaluateRange(CatalogSnapshot snapshot, CartContext context,
+                                                    int[] candidates, int from, int to) {
+        List<ApplicableCouponDto> result = new ArrayList<>();
+        ColumnarRules columnar = engine == EvaluationEngine.COLUMNAR ? snapshot.columnar() : null;
+        for (int i = from; i < to; i++) {
+            CompiledCoupon coupon = snapshot.coupons().get(candidates[i]);
+            BigDecimal d = columnar == null ? null : columnar.discount(candidates[i], context);
+            if (d == null) d = evaluateCompiled(coupon, context);
             if (d.compareTo(BigDecimal.ZERO) > 0) {
-                result.put(coupon.getId(), d);
+                result.add(new ApplicableCouponDto(coupon.id(), coupon.code(), coupon.type(), d));
             }
         }
         return result;
     }
 
+    /**
+     * Evaluates a range of candidate positions, splitting it in halves down to parallelChunkSize.
+     * Halves are concatenated left then right, so matches come back in catalog order.
+     */
+    private final class EvaluationTask extends RecursiveTask<List<ApplicableCouponDto>> {
+        private final CatalogSnapshot snapshot;
+        private final CartContext context;
+        private final int[] candidates;
+        private final int from;
+        private final int to;
+
+        EvaluationTask(CatalogSnapshot snapshot, CartContext context, int[] candidates, int from, int to) {
+            this.snapshot = snapshot;
+            this.context = context;
+            this.candidates = candidates;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<ApplicableCouponDto> compute() {
+            if (to - from <= parallelChunkSize) {
+                return evaluateRange(snapshot, context, candidates, from, to);
+            }
+            int mid = (from + to) >>> 1;
+            EvaluationTask left = new EvaluationTask(snapshot, context, candidates, from, mid);
+            left.fork();
+            List<ApplicableCouponDto> right =
+                    new EvaluationTask(snapshot, context, candidates, mid, to).compute();
+            List<ApplicableCouponDto> merged = left.join();
+            merged.addAll(right);
+            return merged;
+        }
+    }
+
+    private BigDecimal evaluateCompiled(CompiledCoupon coupon, CartContext context) {
+        Evaluator evaluator = evaluatorMap.get(coupon.type());
+        if (evaluator == null) return BigDecimal.ZERO;
+
+        return evaluate(evaluator, coupon.type(), coupon.rule(), context);
+    }
+
+    // timed evaluator call; an exception means "not applicable" and is counted rather than propagated
+    private BigDecimal evaluate(Evaluator evaluator, CouponType type, CouponRule rule, CartContext context) {
+        long start = System.nanoTime();
+        try {
+            return Optional.ofNullable(evaluator.evaluate(rule, context))
+                    .orElse(BigDecimal.ZERO);
+        } catch (Exception ex) {
+            metrics.evaluateError(type);
+            return BigDecimal.ZERO;
+        } finally {
+            metrics.recordEvaluate(type, System.nanoTime() - start);
+        }
+    }
+
     /**
      * Apply the given coupon to the cart. Delegates to the Evaluator's apply(...) method.
      */
@@ -206,9 +484,7 @@ public class CouponService {
 
         if(coupon == null)    return cart;
         if(!coupon.isActive())   return cart;
-        if(coupon.getExpiresAt() != null && coupon.getExpiresAt().isBefore(Instant.now())){
-            return cart;
-        }
+        if(!isLive(coupon, Instant.now()))   return cart;
         if(coupon.getType() == null)    return cart;
 
         Evaluator evaluator = evaluatorMap.get(coupon.getType());
@@ -216,11 +492,24 @@ public class CouponService {
             return cart;
         }
 
+        CouponRule rule = ruleCache.ruleFor(coupon).orElse(null);
+        if(rule == null)    return cart;
+
+        long start = System.nanoTime();
         try {
-            evaluator.apply(coupon,cart);
+            evaluator.apply(rule,cart);
         } catch (Exception e) {
             //cart remains with zero discounts
+            metrics.applyError(coupon.getType());
+        } finally {
+            metrics.recordApply(coupon.getType(), System.nanoTime() - start);
         }
         return cart;
     }
+
+    // a single coupon loaded by id; the catalog path never needs this, its snapshot only holds live coupons
+    private static boolean isLive(Coupon coupon, Instant now) {
+        if (coupon.getStartsAt() != null && coupon.getStartsAt().isAfter(now)) return false;
+        return coupon.getExpiresAt() == null || !coupon.getExpiresAt().isBefore(now);
+    }
 }
@@ -0,0 +1,59 @@
+package dev.anuradha.couponservice.service;
+
+import dev.anuradha.couponservice.model.Coupon;
+import dev.anuradha.couponservice.model.CouponTarget;
+import dev.anuradha.couponservice.model.CouponType;
+import dev.anuradha.couponservice.repositories.CouponRepository;
+import dev.anuradha.couponservice.repositories.CouponTargetRepository;
+import dev.anuradha.couponservice.rule.RuleCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes coupon_targets rows for PRODUCT and BXGY coupons that predate the table, so the database-side
+ * candidate query finds them too. Walks the coupons missing targets in id order, one transaction per page;
+ * once everything is backfilled this is a single empty indexed query at startup.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CouponTargetBackfill {
+
+    private final CouponRepository repo;
+    private final CouponTargetRepository targetRepo;
+    private final RuleCache ruleCache;
+
+    @Value("${coupon.targets.backfill-on-startup:true}")
+    private boolean enabled = true;
+
+    @Value("${coupon.targets.backfill-page-size:500}")
+    private int pageSize = 500;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (!enabled) return;
+        String after = "";
+        long written = 0;
+        while (true) {
+            List<Coupon> page = repo.findWithoutTargets(CouponType.CART, after, PageRequest.of(0, pageSize));
+            if (page.isEmpty()) break;
+            List<CouponTarget> targets = new ArrayList<>();
+            for (Coupon coupon : page) {
+                // a coupon whose details don't compile can't be evaluated either; it's skipped, not retried
+                ruleCache.ruleFor(coupon).ifPresent(rule -> targets.addAll(CouponTarget.of(coupon.getId(), rule)));
+            }
+            targetRepo.saveAll(targets);
+            written += targets.size();
+            after = page.get(page.size() - 1).getId();
+        }
+        if (written > 0) log.info("Backfilled {} coupon targets", written);
+    }
+}
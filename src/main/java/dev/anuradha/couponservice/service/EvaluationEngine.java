@@ -0,0 +1,12 @@
+package dev.anuradha.couponservice.service;
+
+/**
+ * How the applicable-coupons scan evaluates a coupon. EVALUATORS dispatches every coupon to the
+ * {@link Evaluator} for its type. COLUMNAR evaluates CART and PRODUCT coupons straight from the
+ * snapshot's primitive columns on the cart's fixed-point view, with identical results, and still hands
+ * BXGY coupons and anything that doesn't fit in micros to the evaluators.
+ */
+public enum EvaluationEngine {
+    EVALUATORS,
+    COLUMNAR
+}
@@ -1,11 +1,19 @@
 package dev.anuradha.couponservice.service;
 
 import dev.anuradha.couponservice.dto.CartDto;
-import dev.anuradha.couponservice.model.Coupon;
+import dev.anuradha.couponservice.rule.CouponRule;
 
 import java.math.BigDecimal;
 
 public interface Evaluator {
-    BigDecimal evaluate(Coupon coupon, CartDto cartDto);
-    void apply(Coupon coupon, CartDto cartDto);
+    BigDecimal evaluate(CouponRule rule, CartContext cart);
+    void apply(CouponRule rule, CartContext cart);
+
+    default BigDecimal evaluate(CouponRule rule, CartDto cartDto) {
+        return evaluate(rule, CartContext.of(cartDto));
+    }
+
+    default void apply(CouponRule rule, CartDto cartDto) {
+        apply(rule, CartContext.of(cartDto));
+    }
 }
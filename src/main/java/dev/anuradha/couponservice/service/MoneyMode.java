@@ -0,0 +1,10 @@
+package dev.anuradha.couponservice.service;
+
+/**
+ * Arithmetic used when evaluating discounts. FIXED_POINT converts prices and rule values to
+ * long micros once and falls back to BIG_DECIMAL per coupon whenever a value doesn't fit.
+ */
+public enum MoneyMode {
+    BIG_DECIMAL,
+    FIXED_POINT
+}
@@ -0,0 +1,101 @@
+package dev.anuradha.couponservice.service;
+
+import dev.anuradha.couponservice.dto.CartItemDto;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Per-cart aggregates by product in an open-addressing table keyed by the primitive product id, so a
+ * lookup from an evaluator neither boxes the id nor allocates. Entries are kept in order of first
+ * appearance in the cart; linear probing over a power-of-two slot array at most half full.
+ */
+final class ProductTable {
+
+    // entry index + 1 per slot, 0 = empty
+    private final int[] slots;
+    private final int mask;
+
+    private final long[] productIds;
+    private final int[] quantities;
+    private final BigDecimal[] prices;          // first line wins
+    private final CartItemDto[] firstItems;     // first line wins
+    private long[] priceMicros;                 // first line wins, only in the fixed-point view
+    private int size;
+
+    ProductTable(int maxProducts) {
+        int capacity = Integer.highestOneBit(Math.max(2, maxProducts) * 2 - 1) << 1;
+        this.slots = new int[capacity];
+        this.mask = capacity - 1;
+        this.productIds = new long[maxProducts];
+        this.quantities = new int[maxProducts];
+        this.prices = new BigDecimal[maxProducts];
+        this.firstItems = new CartItemDto[maxProducts];
+    }
+
+    void add(CartItemDto item) {
+        long productId = item.getProductId();
+        int slot = slotOf(productId);
+        int entry = slots[slot] - 1;
+        if (entry < 0) {
+            entry = size++;
+            slots[slot] = entry + 1;
+            productIds[entry] = productId;
+            prices[entry] = item.getPrice();
+            firstItems[entry] = item;
+        }
+        quantities[entry] += item.getQuantity();
+    }
+
+    void priceMicros(long[] micros) {
+        this.priceMicros = micros;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // index of the product's entry, -1 if it isn't in the cart
+    int indexOf(long productId) {
+        return slots[slotOf(productId)] - 1;
+    }
+
+    long productId(int entry) {
+        return productIds[entry];
+    }
+
+    int quantity(long productId) {
+        int entry = indexOf(productId);
+        return entry < 0 ? 0 : quantities[entry];
+    }
+
+    BigDecimal price(long productId) {
+        int entry = indexOf(productId);
+        return entry < 0 ? BigDecimal.ZERO : prices[entry];
+    }
+
+    long priceMicros(long productId) {
+        int entry = indexOf(productId);
+        return entry < 0 ? 0L : priceMicros[entry];
+    }
+
+    CartItemDto firstItem(long productId) {
+        int entry = indexOf(productId);
+        return entry < 0 ? null : firstItems[entry];
+    }
+
+    long[] productIds() {
+        return Arrays.copyOf(productIds, size);
+    }
+
+    // the product's slot, or the empty slot where it would go
+    private int slotOf(long productId) {
+        long h = productId * 0x9E3779B97F4A7C15L;
+        int slot = (int) (h ^ (h >>> 32)) & mask;
+        while (true) {
+            int entry = slots[slot] - 1;
+            if (entry < 0 || productIds[entry] == productId) return slot;
+            slot = (slot + 1) & mask;
+        }
+    }
+}
@@ -1,76 +1,87 @@
 package dev.anuradha.couponservice.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import dev.anuradha.couponservice.dto.CartDto;
 import dev.anuradha.couponservice.dto.CartItemDto;
-import dev.anuradha.couponservice.dto.ProductWiseDetailsDto;
-import dev.anuradha.couponservice.model.Coupon;
-import lombok.RequiredArgsConstructor;
+import dev.anuradha.couponservice.rule.CouponRule;
+import dev.anuradha.couponservice.rule.ProductRule;
+import dev.anuradha.couponservice.util.Money;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.util.Objects;
+import java.util.List;
 
 @Component
-@RequiredArgsConstructor
 public class ProductWiseEvaluator implements Evaluator{
 
-    private final ObjectMapper objectMapper;
-
     @Override
-    public BigDecimal evaluate(Coupon coupon, CartDto cartDto){
+    public BigDecimal evaluate(CouponRule couponRule, CartContext cart){
         // product-wise evaluation logic
-        try{
-            ProductWiseDetailsDto detailsDto = objectMapper.readValue(
-                    coupon.getDetails(), ProductWiseDetailsDto.class
-            );
-            BigDecimal discount = BigDecimal.ZERO;
-            for(CartItemDto itemDto : cartDto.getItems()){
-                if(Objects.equals(itemDto.getProductId(), detailsDto.getProductId())){
-                    if("PERCENT".equalsIgnoreCase(detailsDto.getDiscountType())){
-                        BigDecimal itemTotal = itemDto.getPrice()
-                                .multiply(BigDecimal.valueOf(itemDto.getQuantity()));
-                        discount = discount.add(itemTotal.multiply(detailsDto.getDiscountValue())
-                                .divide(BigDecimal.valueOf(100), 6, RoundingMode.HALF_UP));
-                    }else {
-                        discount = discount.add(detailsDto.getDiscountValue()
-                                .multiply(BigDecimal.valueOf(itemDto.getQuantity())));
-                    }
+        ProductRule rule = (ProductRule) couponRule;
+        if (cart.fixedPoint() && rule.fixedPoint()) {
+            try {
+                return evaluateFixedPoint(rule, cart);
+            } catch (ArithmeticException overflow) {
+                // fall through to BigDecimal
+            }
+        }
+        List<CartItemDto> items = cart.items();
+        BigDecimal discount = BigDecimal.ZERO;
+        for(int i = 0; i < items.size(); i++){
+            CartItemDto itemDto = items.get(i);
+            if(cart.usable(i) && itemDto.getProductId() == rule.productId()){
+                if(rule.percent()){
+                    discount = discount.add(cart.lineTotal(i).multiply(rule.discountValue())
+                            .divide(BigDecimal.valueOf(100), 6, RoundingMode.HALF_UP));
+                }else {
+                    discount = discount.add(rule.discountValue()
+                            .multiply(BigDecimal.valueOf(itemDto.getQuantity())));
                 }
             }
-            return discount;
-        } catch (Exception ex) {
-            return BigDecimal.ZERO;
         }
+        return discount;
+    }
+
+    private static BigDecimal evaluateFixedPoint(ProductRule rule, CartContext cart) {
+        List<CartItemDto> items = cart.items();
+        long discount = 0;
+        boolean matched = false;
+        for (int i = 0; i < items.size(); i++) {
+            CartItemDto item = items.get(i);
+            if (!cart.usable(i) || item.getProductId() != rule.productId()) continue;
+            matched = true;
+            long line = rule.percent()
+                    ? Money.percentOf(cart.lineTotalMicros(i), rule.discountValueMicros())
+                    : Math.multiplyExact(rule.discountValueMicros(), (long) item.getQuantity());
+            discount = Math.addExact(discount, line);
+        }
+        if (!matched) return BigDecimal.ZERO;
+        // same scale the BigDecimal sum ends up with
+        BigDecimal result = Money.fromMicros(discount);
+        return rule.percent() ? result : result.setScale(Math.max(0, rule.discountValue().scale()));
     }
 
     @Override
-    public void apply(Coupon coupon, CartDto cartDto){
-        try{
-            ProductWiseDetailsDto detailsDto =
-                    objectMapper.readValue(coupon.getDetails(), ProductWiseDetailsDto.class);
-            for(CartItemDto cartItemDto : cartDto.getItems()){
-                if(Objects.equals(cartItemDto.getProductId(), detailsDto.getProductId())){
-                    if("PERCENT".equalsIgnoreCase(detailsDto.getDiscountType())){
-                        BigDecimal itemTotal = cartItemDto.getPrice()
-                                .multiply(BigDecimal.valueOf(cartItemDto.getQuantity()));
-                        BigDecimal disc = itemTotal.multiply(detailsDto.getDiscountValue())
-                                .divide(BigDecimal.valueOf(100), 6, RoundingMode.HALF_UP);
-                        cartItemDto.setTotalDiscount(disc);
-                    }else {
-                        BigDecimal disc = detailsDto.getDiscountValue()
-                                .multiply(BigDecimal.valueOf(cartItemDto.getQuantity()));
-                        cartItemDto.setTotalDiscount(disc);
-                    }
-                }
-                else {
-                    cartItemDto.setTotalDiscount(cartItemDto.getTotalDiscount() == null ?
-                            BigDecimal.ZERO : cartItemDto.getTotalDiscount());
+    public void apply(CouponRule couponRule, CartContext cart){
+        ProductRule rule = (ProductRule) couponRule;
+        List<CartItemDto> items = cart.items();
+        for(int i = 0; i < items.size(); i++){
+            CartItemDto cartItemDto = items.get(i);
+            if(cartItemDto == null) continue;
+            if(cart.usable(i) && cartItemDto.getProductId() == rule.productId()){
+                if(rule.percent()){
+                    BigDecimal disc = cart.lineTotal(i).multiply(rule.discountValue())
+                            .divide(BigDecimal.valueOf(100), 6, RoundingMode.HALF_UP);
+                    cartItemDto.setTotalDiscount(disc);
+                }else {
+                    BigDecimal disc = rule.discountValue()
+                            .multiply(BigDecimal.valueOf(cartItemDto.getQuantity()));
+                    cartItemDto.setTotalDiscount(disc);
                 }
             }
-        } catch (Exception e) {
-            //leave discount as zero
+            else {
+                cartItemDto.setTotalDiscount(cartItemDto.getTotalDiscount() == null ?
+                        BigDecimal.ZERO : cartItemDto.getTotalDiscount());
+            }
         }
     }
 }
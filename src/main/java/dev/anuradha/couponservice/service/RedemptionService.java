@@ -0,0 +1,285 @@
+package dev.anuradha.couponservice.service;
+
+import dev.anuradha.couponservice.catalog.CatalogSnapshot;
+import dev.anuradha.couponservice.catalog.CompiledCoupon;
+import dev.anuradha.couponservice.catalog.CouponCatalog;
+import dev.anuradha.couponservice.exception.BadRequestException;
+import dev.anuradha.couponservice.model.Coupon;
+import dev.anuradha.couponservice.repositories.CouponRedemptionRepository;
+import dev.anuradha.couponservice.repositories.CouponRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coupon redemptions with global and per-customer limits.
+ * <p>
+ * The global limit is enforced with leases: this node reserves a block of redemptions at a time with a
+ * conditional update on {@code coupons.redemptions_reserved} (which never exceeds {@code max_redemptions})
+ * and hands them out with a CAS on an in-memory counter, so the coupon row is touched once per block rather
+ * than once per redemption. A crash loses the unused part of a lease, which can only under-redeem, never
+ * over-redeem. Confirmed redemptions are counted in a striped {@link LongAdder} and added to
+ * {@code coupons.redemption_count} in JDBC batches in the background.
+ * <p>
+ * Per-customer limits are checked and written in one conditional statement on the customer's own
+ * {@code coupon_redemptions} row before the redemption is confirmed, so they hold across crashes too and
+ * never contend on the coupon row.
+ * <p>
+ * Allowances of coupons that have left the catalog (deleted or expired) are dropped on the flush tick and
+ * their unused leases handed back.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RedemptionService {
+
+    public enum Outcome { REDEEMED, NOT_FOUND, EXPIRED, LIMIT_REACHED, CUSTOMER_LIMIT_REACHED }
+
+    private final CouponCatalog catalog;
+    private final CouponRepository repo;
+    private final CouponRedemptionRepository redemptionRepo;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<String, Allowance> allowances = new ConcurrentHashMap<>();
+    // dropped from allowances but flushed once more, for redemptions that were in flight; guarded by this
+    private List<Allowance> retired = new ArrayList<>();
+
+    // redemptions leased from the database at a time; bigger means fewer row updates but more lost on a crash
+    @Value("${coupon.redemption.lease-size:100}")
+    private int leaseSize = 100;
+
+    // once a coupon is exhausted, how long to answer "limit reached" before asking the database again
+    @Value("${coupon.redemption.exhausted-recheck-ms:1000}")
+    private long exhaustedRecheckMs = 1000;
+
+    // what redeeming needs to know about a coupon, from the catalog or the row
+    private record Limits(String code, Instant startsAt, Instant expiresAt, Integer maxRedemptions,
+                          Integer maxRedemptionsPerCustomer) {
+
+        static Limits of(CompiledCoupon c) {
+            return new Limits(c.code(), c.startsAt(), c.expiresAt(), c.maxRedemptions(), c.maxRedemptionsPerCustomer());
+        }
+
+        static Limits of(Coupon c) {
+            return new Limits(c.getCode(), c.getStartsAt(), c.getExpiresAt(), c.getMaxRedemptions(),
+                    c.getMaxRedemptionsPerCustomer());
+        }
+
+        boolean isExpired(Instant now) {
+            return expiresAt != null && expiresAt.isBefore(now);
+        }
+    }
+
+    public Outcome redeem(String couponId, String customerId) {
+        Instant now = Instant.now();
+        CompiledCoupon compiled = catalog.snapshot().get(couponId);
+        Limits coupon;
+        if (compiled != null) {
+            coupon = Limits.of(compiled);
+        } else {
+            // not in the catalog: it may not be loaded yet, or the coupon was just written on another node
+            Coupon row = repo.findById(couponId).orElse(null);
+            if (row == null) return Outcome.NOT_FOUND;
+            coupon = Limits.of(row);
+            // expired coupons are also marked inactive, and still answer EXPIRED
+            boolean started = coupon.startsAt() == null || !coupon.startsAt().isAfter(now);
+            if (!coupon.isExpired(now) && (!row.isActive() || !started)) return Outcome.NOT_FOUND;
+        }
+        if (coupon.isExpired(now)) return Outcome.EXPIRED;
+
+        Integer perCustomer = coupon.maxRedemptionsPerCustomer();
+        if (perCustomer != null && (customerId == null || customerId.isBlank())) {
+            throw new BadRequestException("customerId is required for coupon " + coupon.code());
+        }
+
+        Allowance allowance = allowances.computeIfAbsent(couponId, Allowance::new);
+        if (coupon.maxRedemptions() != null) {
+            // the flush tick can prune a coupon the catalog hasn't caught up with between the lookup and the
+            // take; a retired allowance says nothing about the limit, so lease again through a fresh one
+            while (!allowance.take()) {
+                if (!allowance.isRetired()) return Outcome.LIMIT_REACHED;
+                allowance = allowances.computeIfAbsent(couponId, Allowance::new);
+            }
+        }
+
+        if (perCustomer != null && !reserveForCustomer(couponId, customerId, perCustomer)) {
+            if (coupon.maxRedemptions() != null) allowance.giveBack();
+            return Outcome.CUSTOMER_LIMIT_REACHED;
+        }
+        allowance.redeemed.increment();
+        return Outcome.REDEEMED;
+    }
+
+    private boolean reserveForCustomer(String couponId, String customerId, int limit) {
+        if (redemptionRepo.incrementBelow(couponId, customerId, limit) == 1) return true;
+        if (limit <= 0) return false;
+        try {
+            return redemptionRepo.insertFirst(couponId, customerId) == 1;
+        } catch (DataIntegrityViolationException alreadyThere) {
+            // the row exists (created concurrently, or already at the limit): one more conditional try
+            return redemptionRepo.incrementBelow(couponId, customerId, limit) == 1;
+        }
+    }
+
+    /**
+     * Adds the redemptions confirmed since the last flush to {@code coupons.redemption_count}, in one JDBC batch,
+     * then drops the allowances of coupons no longer in the catalog.
+     */
+    @Scheduled(fixedDelayString = "${coupon.redemption.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        List<Allowance> lastFlush = retired;
+        retired = new ArrayList<>();
+        List<Object[]> rows = new ArrayList<>();
+        List<Allowance> flushed = new ArrayList<>();
+        for (Allowance allowance : allowances.values()) collect(allowance, rows, flushed);
+        for (Allowance allowance : lastFlush) collect(allowance, rows, flushed);
+        if (!rows.isEmpty()) {
+            try {
+                jdbcTemplate.batchUpdate("update coupons set redemption_count = redemption_count + ? where id = ?", rows);
+            } catch (DataAccessException ex) {
+                // keep the counts for the next attempt
+                for (int i = 0; i < flushed.size(); i++) flushed.get(i).redeemed.add((Long) rows.get(i)[0]);
+                retired.addAll(lastFlush);
+                log.warn("Redemption count flush failed, will retry: {}", ex.getMessage());
+            }
+        }
+        prune();
+    }
+
+    private static void collect(Allowance allowance, List<Object[]> rows, List<Allowance> flushed) {
+        long n = allowance.redeemed.sumThenReset();
+        if (n > 0) {
+            rows.add(new Object[]{n, allowance.couponId});
+            flushed.add(allowance);
+        }
+    }
+
+    // deleted and expired coupons leave the catalog; their allowances go, and so do their unused leases
+    private void prune() {
+        if (!catalog.isLoaded()) return;
+        CatalogSnapshot snapshot = catalog.snapshot(Instant.now());
+        List<Object[]> unused = new ArrayList<>();
+        for (Allowance allowance : allowances.values()) {
+            if (snapshot.get(allowance.couponId) != null || !allowances.remove(allowance.couponId, allowance)) continue;
+            long n = allowance.retire();
+            if (n > 0) unused.add(new Object[]{n, allowance.couponId});
+            retired.add(allowance);
+        }
+        handBackQuietly(unused);
+    }
+
+    private void handBackQuietly(List<Object[]> rows) {
+        try {
+            handBack(rows);
+        } catch (DataAccessException ex) {
+            // lost leases can only under-redeem
+            log.warn("Could not hand back {} unused redemption leases: {}", rows.size(), ex.getMessage());
+        }
+    }
+
+    private void handBack(List<Object[]> rows) {
+        if (rows.isEmpty()) return;
+        jdbcTemplate.batchUpdate("update coupons set redemptions_reserved = redemptions_reserved - ? where id = ?", rows);
+    }
+
+    /**
+     * On a clean shutdown, flush counts and hand unused leases back so other nodes can use them.
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        List<Object[]> rows = new ArrayList<>();
+        for (Allowance allowance : allowances.values()) {
+            long unused = allowance.retire();
+            if (unused > 0) rows.add(new Object[]{unused, allowance.couponId});
+        }
+        handBack(rows);
+    }
+
+    private final class Allowance {
+        final String couponId;
+        // leased but not yet handed out
+        final AtomicLong available = new AtomicLong();
+        final LongAdder redeemed = new LongAdder();
+        // guarded by this
+        boolean exhausted;
+        long recheckAt;
+        boolean retired;
+
+        Allowance(String couponId) {
+            this.couponId = couponId;
+        }
+
+        boolean take() {
+            while (true) {
+                long n = available.get();
+                if (n > 0) {
+                    if (available.compareAndSet(n, n - 1)) return true;
+                } else if (!refill()) {
+                    return false;
+                }
+            }
+        }
+
+        void giveBack() {
+            available.incrementAndGet();
+        }
+
+        // no more leases for this allowance; returns what it held unused
+        synchronized long retire() {
+            retired = true;
+            return available.getAndSet(0);
+        }
+
+        synchronized boolean isRetired() {
+            return retired;
+        }
+
+        // threads that find the lease empty queue here; only the first one goes to the database
+        private synchronized boolean refill() {
+            if (available.get() > 0) return true;
+            if (retired) return false;
+            if (exhausted && System.nanoTime() - recheckAt < 0) return false;
+
+            long leased = lease();
+            if (retired) {
+                // pruned while leasing: nothing hands out from here again, so the block goes straight back
+                if (leased > 0) handBackQuietly(List.<Object[]>of(new Object[]{leased, couponId}));
+                return false;
+            }
+            exhausted = leased == 0;
+            if (exhausted) {
+                recheckAt = System.nanoTime() + exhaustedRecheckMs * 1_000_000;
+                return false;
+            }
+            available.addAndGet(leased);
+            return true;
+        }
+
+        private long lease() {
+            if (repo.leaseRedemptions(couponId, leaseSize) == 1) return leaseSize;
+            // less than a full block left: take what remains, unless another node beats us to it
+            for (int attempt = 0; attempt < 3; attempt++) {
+                long left = repo.redemptionsLeft(couponId).orElse(0L);
+                if (left <= 0) return 0;
+                long n = Math.min(left, leaseSize);
+                if (repo.leaseRedemptions(couponId, n) == 1) return n;
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package dev.anuradha.couponservice.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over strings: {@link #mightContain} is false only for strings never {@link #put}, and true
+ * for a string never put with roughly the configured probability, in about {@code -ln(fpp) / ln(2)^2} bits
+ * per expected element (9.6 bits at 1%). Elements can't be removed. Reads and writes are lock-free, so
+ * the filter can be read while it is being added to.
+ * <p>
+ * The k bit positions come from two 64-bit hashes of the string (Kirsch-Mitzenmacher double hashing).
+ */
+public final class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitSize;
+    private final int hashCount;
+    private final long capacity;
+    private final AtomicLong bitsSet = new AtomicLong();
+    private final AtomicLong insertions = new AtomicLong();
+
+    private BloomFilter(long bitSize, int hashCount, long capacity) {
+        long wordCount = (bitSize + 63) / 64;
+        if (wordCount > Integer.MAX_VALUE) throw new IllegalArgumentException("filter too large: " + bitSize + " bits");
+        this.words = new AtomicLongArray((int) wordCount);
+        this.bitSize = wordCount * 64;
+        this.hashCount = hashCount;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Filter sized for {@code expectedElements} at false-positive probability {@code fpp}; past that many
+     * elements the actual rate climbs above {@code fpp}.
+     */
+    public static BloomFilter forCapacity(long expectedElements, double fpp) {
+        if (expectedElements <= 0) throw new IllegalArgumentException("expectedElements must be positive");
+        if (!(fpp > 0 && fpp < 1)) throw new IllegalArgumentException("fpp must be between 0 and 1");
+        double ln2 = Math.log(2);
+        long bits = (long) Math.ceil(-expectedElements * Math.log(fpp) / (ln2 * ln2));
+        int k = Math.max(1, (int) Math.round((double) bits / expectedElements * ln2));
+        return new BloomFilter(Math.max(bits, 64), k, expectedElements);
+    }
+
+    public void put(String value) {
+        long h1 = hash(value, 0x9E3779B97F4A7C15L);
+        long h2 = hash(value, 0xC2B2AE3D27D4EB4FL) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitSize);
+            if (setBit(bit)) bitsSet.incrementAndGet();
+        }
+        insertions.incrementAndGet();
+    }
+
+    public boolean mightContain(String value) {
+        long h1 = hash(value, 0x9E3779B97F4A7C15L);
+        long h2 = hash(value, 0xC2B2AE3D27D4EB4FL) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitSize);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * False-positive probability given the bits set so far, (set / size)^k. Grows with insertions,
+     * including ones of strings that were later deleted or renamed.
+     */
+    public double expectedFpp() {
+        return Math.pow((double) bitsSet.get() / bitSize, hashCount);
+    }
+
+    public long memoryBytes() {
+        return (long) words.length() * Long.BYTES;
+    }
+
+    public long bitSize() {
+        return bitSize;
+    }
+
+    public int hashCount() {
+        return hashCount;
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+
+    // put() calls, duplicates included
+    public long insertions() {
+        return insertions.get();
+    }
+
+    // true if this call changed the bit from 0 to 1
+    private boolean setBit(long bit) {
+        int word = (int) (bit >>> 6);
+        long mask = 1L << bit;
+        while (true) {
+            long current = words.get(word);
+            if ((current & mask) != 0) return false;
+            if (words.compareAndSet(word, current, current | mask)) return true;
+        }
+    }
+
+    private static long hash(String value, long seed) {
+        long h = seed ^ (value.length() * 0xFF51AFD7ED558CCDL);
+        for (int i = 0; i < value.length(); i++) {
+            h = (h ^ value.charAt(i)) * 0x100000001B3L;
+            h ^= h >>> 29;
+        }
+        // murmur3 finalizer, so every input bit affects every output bit
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
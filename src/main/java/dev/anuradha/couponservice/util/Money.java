@@ -0,0 +1,64 @@
+package dev.anuradha.couponservice.util;
+
+import java.math.BigDecimal;
+
+/**
+ * Fixed-point money helpers: amounts as {@code long} millionths (scale 6, the same scale the
+ * BigDecimal evaluators divide to). Conversions are exact or throw {@link ArithmeticException},
+ * so callers can fall back to BigDecimal for values that don't fit.
+ */
+public final class Money {
+
+    public static final int SCALE = 6;
+
+    private static final long ONE = 1_000_000L;
+
+    private Money() {
+    }
+
+    /**
+     * Exact conversion to micros; throws ArithmeticException if the value has more than
+     * 6 decimals or doesn't fit in a long.
+     */
+    public static long toMicros(BigDecimal value) {
+        return value.movePointRight(SCALE).longValueExact();
+    }
+
+    public static boolean fitsMicros(BigDecimal value) {
+        try {
+            toMicros(value);
+            return true;
+        } catch (ArithmeticException ex) {
+            return false;
+        }
+    }
+
+    // micros, or 0 when the value doesn't fit; pair with fitsMicros
+    public static long toMicrosOrZero(BigDecimal value) {
+        return fitsMicros(value) ? toMicros(value) : 0L;
+    }
+
+    public static BigDecimal fromMicros(long micros) {
+        return BigDecimal.valueOf(micros, SCALE);
+    }
+
+    /**
+     * amount * percent / 100 rounded HALF_UP to 6 decimals, i.e.
+     * {@code amount.multiply(percent).divide(100, 6, HALF_UP)} on micros.
+     */
+    public static long percentOf(long amountMicros, long percentMicros) {
+        return divideHalfUp(Math.multiplyExact(amountMicros, percentMicros), 100 * ONE);
+    }
+
+    /**
+     * num / den rounded HALF_UP (ties away from zero); den must be positive.
+     */
+    public static long divideHalfUp(long num, long den) {
+        long q = num / den;
+        long r = num % den;
+        if (Math.abs(r) >= den - Math.abs(r)) {
+            q += num < 0 ? -1 : 1;
+        }
+        return q;
+    }
+}
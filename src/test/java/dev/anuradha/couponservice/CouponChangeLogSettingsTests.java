@@ -0,0 +1,30 @@
+package dev.anuradha.couponservice;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+
+import java.time.Duration;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The shipped settings keep the change log from giving up on a sequence number while the transaction holding
+ * it can still commit.
+ */
+class CouponChangeLogSettingsTests {
+
+    @Test
+    void testGapTimeoutOutlastsTheLongestWritingTransaction() throws Exception {
+        Properties properties = PropertiesLoaderUtils.loadAllProperties("application.properties");
+        String writerTimeout = properties.getProperty("coupon.changes.writer-timeout-s");
+        assertNotNull(writerTimeout, "writing transactions must be bounded by a timeout");
+
+        Duration longestTransaction = Duration.ofSeconds(Long.parseLong(writerTimeout));
+        long gapTimeoutMs = Long.parseLong(properties.getProperty("coupon.changes.gap-timeout-ms"));
+        long pollMs = Long.parseLong(properties.getProperty("coupon.changes.poll-ms"));
+        // the last poll before giving up must come after the transaction has either committed or timed out
+        assertTrue(gapTimeoutMs > longestTransaction.toMillis() + pollMs,
+                "coupon.changes.gap-timeout-ms=" + gapTimeoutMs + " doesn't outlast a " + writerTimeout + "s writer");
+    }
+}
@@ -0,0 +1,181 @@
+package dev.anuradha.couponservice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.anuradha.couponservice.catalog.CouponCatalog;
+import dev.anuradha.couponservice.dto.CartWiseDetailsDto;
+import dev.anuradha.couponservice.dto.CouponImportResultDto;
+import dev.anuradha.couponservice.dto.UpdateCouponDto;
+import dev.anuradha.couponservice.model.Coupon;
+import dev.anuradha.couponservice.model.CouponChange;
+import dev.anuradha.couponservice.model.CouponType;
+import dev.anuradha.couponservice.repositories.CouponRepository;
+import dev.anuradha.couponservice.rule.CartRule;
+import dev.anuradha.couponservice.service.CouponChangeLog;
+import dev.anuradha.couponservice.service.CouponImportReader;
+import dev.anuradha.couponservice.service.CouponImportService;
+import dev.anuradha.couponservice.service.CouponService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two nodes sharing one H2 database: a write on one reaches the other's catalog through coupon_changes.
+ * Polling is driven by the test, so the scheduled poll is pushed far out. Each test gets its own database,
+ * closed with the nodes, so nothing here touches the database of the cached Spring test contexts.
+ */
+class CouponChangeLogTwoNodeTests {
+
+    private ConfigurableApplicationContext nodeA;
+    private ConfigurableApplicationContext nodeB;
+
+    @BeforeEach
+    void startNodes() {
+        String database = "two-nodes-" + UUID.randomUUID();
+        nodeA = node("a", database);
+        nodeB = node("b", database);
+    }
+
+    @AfterEach
+    void stopNodes() {
+        if (nodeB != null) nodeB.close();
+        if (nodeA != null) nodeA.close();
+    }
+
+    // command-line arguments, so they win over application-test.properties; builder properties are only defaults
+    private static ConfigurableApplicationContext node(String id, String database) {
+        return new SpringApplicationBuilder(CouponServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .run(
+                        // dropped once both nodes have closed their pools
+                        "--spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_ON_EXIT=FALSE",
+                        // the second node must not recreate (or, on close, drop) the first one's tables
+                        "--spring.jpa.hibernate.ddl-auto=update",
+                        "--spring.jpa.show-sql=false",
+                        "--coupon.node-id=" + id,
+                        "--coupon.changes.poll-ms=3600000",
+                        "--coupon.schedule.tick-ms=3600000");
+    }
+
+    @Test
+    void testWritesOnOneNodeReachTheOtherNodesCatalog() throws Exception {
+        CouponService serviceA = nodeA.getBean(CouponService.class);
+        CouponCatalog catalogB = nodeB.getBean(CouponCatalog.class);
+        CouponChangeLog changesB = nodeB.getBean(CouponChangeLog.class);
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        Coupon coupon = new Coupon();
+        coupon.setCode("TWO-NODES");
+        coupon.setType(CouponType.CART);
+        coupon.setDetails(objectMapper.writeValueAsString(
+                new CartWiseDetailsDto(BigDecimal.ZERO, "FLAT", BigDecimal.TEN)));
+        String id = serviceA.create(coupon).getId();
+        assertNull(catalogB.snapshot().get(id));
+
+        changesB.poll();
+        assertNotNull(catalogB.snapshot().get(id));
+
+        UpdateCouponDto update = new UpdateCouponDto();
+        update.setDetails(objectMapper.writeValueAsString(
+                new CartWiseDetailsDto(BigDecimal.ZERO, "FLAT", BigDecimal.valueOf(20))));
+        serviceA.update(id, update);
+        changesB.poll();
+        assertEquals(0, BigDecimal.valueOf(20).compareTo(
+                ((CartRule) catalogB.snapshot().get(id).rule()).discountValue()));
+
+        // polling again applies nothing twice
+        long version = catalogB.version();
+        changesB.poll();
+        assertEquals(version, catalogB.version());
+
+        serviceA.delete(id);
+        changesB.poll();
+        assertNull(catalogB.snapshot().get(id));
+
+        assertEquals(3, nodeB.getBean(MeterRegistry.class).get("coupon.changes.lag").timer().count());
+    }
+
+    @Test
+    void testChangesCommittedLateStillReachTheOtherNode() throws Exception {
+        CouponService serviceA = nodeA.getBean(CouponService.class);
+        CouponChangeLog changesA = nodeA.getBean(CouponChangeLog.class);
+        CouponChangeLog changesB = nodeB.getBean(CouponChangeLog.class);
+        CouponCatalog catalogB = nodeB.getBean(CouponCatalog.class);
+        TransactionTemplate tx = new TransactionTemplate(nodeA.getBean(PlatformTransactionManager.class));
+
+        // a long transaction takes its sequence number first and commits after many later writes
+        Coupon late = cartCoupon("LATE");
+        CountDownLatch logged = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        CompletableFuture<Void> slow = CompletableFuture.runAsync(() -> tx.executeWithoutResult(status -> {
+            nodeA.getBean(CouponRepository.class).save(late);
+            changesA.record(late.getId(), CouponChange.Kind.UPSERT);
+            logged.countDown();
+            try {
+                commit.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertTrue(logged.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 150; i++) serviceA.create(cartCoupon("LATER-" + i));
+
+        changesB.poll();
+        assertEquals(1, changesB.openGaps());
+        assertNull(catalogB.snapshot().get(late.getId()));
+
+        commit.countDown();
+        slow.get(10, TimeUnit.SECONDS);
+        changesB.poll();
+        assertEquals(0, changesB.openGaps());
+        assertNotNull(catalogB.snapshot().get(late.getId()));
+    }
+
+    @Test
+    void testImportedCouponsReachTheOtherNode() {
+        String body = """
+                code,type,details
+                IMPORT-1,CART,"{""threshold"":0,""discountType"":""FLAT"",""discountValue"":5}"
+                IMPORT-2,CART,"{""threshold"":0,""discountType"":""FLAT"",""discountValue"":6}"
+                IMPORT-3,CART,"{""threshold"":0,""discountType"":""FLAT"",""discountValue"":7}"
+                """;
+        CouponImportResultDto result = nodeA.getBean(CouponImportService.class)
+                .importCoupons(CouponImportReader.csv(new BufferedReader(new StringReader(body))));
+        assertEquals(3, result.imported());
+
+        CouponChangeLog changesB = nodeB.getBean(CouponChangeLog.class);
+        CouponCatalog catalogB = nodeB.getBean(CouponCatalog.class);
+        changesB.poll();
+        CouponRepository repoB = nodeB.getBean(CouponRepository.class);
+        for (String code : List.of("IMPORT-1", "IMPORT-2", "IMPORT-3")) {
+            assertNotNull(catalogB.snapshot().get(repoB.findByCode(code).orElseThrow().getId()), code);
+        }
+        assertEquals(0, changesB.openGaps());
+    }
+
+    private static Coupon cartCoupon(String code) throws Exception {
+        Coupon coupon = new Coupon();
+        coupon.setCode(code);
+        coupon.setType(CouponType.CART);
+        coupon.setDetails(new ObjectMapper().writeValueAsString(
+                new CartWiseDetailsDto(BigDecimal.ZERO, "FLAT", BigDecimal.TEN)));
+        return coupon;
+    }
+}
@@ -0,0 +1,130 @@
+package dev.anuradha.couponservice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.anuradha.couponservice.dto.CartWiseDetailsDto;
+import dev.anuradha.couponservice.dto.UpdateCouponDto;
+import dev.anuradha.couponservice.exception.BadRequestException;
+import dev.anuradha.couponservice.model.Coupon;
+import dev.anuradha.couponservice.model.CouponType;
+import dev.anuradha.couponservice.repositories.CouponRedemptionRepository;
+import dev.anuradha.couponservice.repositories.CouponRepository;
+import dev.anuradha.couponservice.service.CouponService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class SecondLevelCacheTests {
+
+    @Autowired
+    private CouponService couponService;
+
+    @Autowired
+    private CouponRepository repo;
+
+    @Autowired
+    private CouponRedemptionRepository redemptionRepo;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Test
+    void testPointLookupsAreServedFromTheSecondLevelCache() throws Exception {
+        Coupon coupon = new Coupon();
+        coupon.setCode("L2-CACHE");
+        coupon.setType(CouponType.CART);
+        coupon.setDetails(new ObjectMapper().writeValueAsString(
+                new CartWiseDetailsDto(BigDecimal.ZERO, "FLAT", BigDecimal.ONE)));
+        String id = couponService.create(coupon).getId();
+
+        entityManagerFactory.getCache().evictAll();
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        stats.clear();
+
+        // each call is its own session, so only the second-level cache can answer the second one
+        assertTrue(couponService.findById(id).isPresent());
+        assertTrue(couponService.findById(id).isPresent());
+        assertEquals(1, stats.getDomainDataRegionStatistics(Coupon.CACHE).getHitCount());
+        assertEquals(1, stats.getDomainDataRegionStatistics(Coupon.CACHE).getMissCount());
+
+        assertEquals(id, repo.findByCode("L2-CACHE").orElseThrow().getId());
+        assertEquals(id, repo.findByCode("L2-CACHE").orElseThrow().getId());
+        assertEquals(1, stats.getQueryRegionStatistics(Coupon.BY_CODE_CACHE).getHitCount());
+
+        assertFalse(registry.find("hibernate.second.level.cache.requests").tag("region", Coupon.CACHE).meters().isEmpty());
+    }
+
+    @Test
+    void testRedemptionAndExpiryUpdatesKeepTheRestOfTheRegion() throws Exception {
+        String bystander = couponService.create(coupon("L2-BYSTANDER", null)).getId();
+        Coupon limited = coupon("L2-LIMITED", Instant.now().plus(1, ChronoUnit.HOURS));
+        limited.setMaxRedemptions(10);
+        String id = couponService.create(limited).getId();
+        couponService.findById(bystander);
+        couponService.findById(id);
+        Cache cache = entityManagerFactory.getCache();
+        assertTrue(cache.contains(Coupon.class, bystander));
+
+        assertEquals(1, repo.leaseRedemptions(id, 5));
+        assertEquals(1, redemptionRepo.insertFirst(id, "customer-1"));
+        assertTrue(cache.contains(Coupon.class, bystander));
+        assertTrue(cache.contains(Coupon.class, id));
+
+        // the limit can't drop below what has been leased; at it is fine, and the cached coupon follows
+        assertThrows(BadRequestException.class, () -> couponService.update(id, limit(4)));
+        couponService.update(id, limit(5));
+        assertEquals(5, couponService.findById(id).orElseThrow().getMaxRedemptions());
+
+        // only the coupon whose cached state changed is dropped
+        assertEquals(1, repo.deactivateExpired(List.of(id), Instant.now().plus(1, ChronoUnit.DAYS)));
+        assertFalse(cache.contains(Coupon.class, id));
+        assertTrue(cache.contains(Coupon.class, bystander));
+        assertFalse(couponService.findById(id).orElseThrow().isActive());
+    }
+
+    @Test
+    void testStreamingEveryCouponLeavesTheRegionAlone() throws Exception {
+        String id = couponService.create(coupon("L2-STREAMED", null)).getId();
+        Cache cache = entityManagerFactory.getCache();
+        cache.evictAll();
+
+        List<String> streamed = new ArrayList<>();
+        couponService.forEachCoupon(coupon -> streamed.add(coupon.getId()));
+        assertTrue(streamed.contains(id));
+        assertFalse(cache.contains(Coupon.class, id));
+    }
+
+    private static UpdateCouponDto limit(int maxRedemptions) {
+        UpdateCouponDto update = new UpdateCouponDto();
+        update.setMaxRedemptions(maxRedemptions);
+        return update;
+    }
+
+    private static Coupon coupon(String code, Instant expiresAt) throws Exception {
+        Coupon coupon = new Coupon();
+        coupon.setCode(code);
+        coupon.setType(CouponType.CART);
+        coupon.setExpiresAt(expiresAt);
+        coupon.setDetails(new ObjectMapper().writeValueAsString(
+                new CartWiseDetailsDto(BigDecimal.ZERO, "FLAT", BigDecimal.ONE)));
+        return coupon;
+    }
+}
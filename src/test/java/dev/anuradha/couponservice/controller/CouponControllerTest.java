@@ -5,10 +5,18 @@ import dev.anuradha.couponservice.dto.CouponMapper;
 import dev.anuradha.couponservice.dto.CouponRequestDto;
 import dev.anuradha.couponservice.model.Coupon;
 import dev.anuradha.couponservice.model.CouponType;
+import dev.anuradha.couponservice.service.CouponImportService;
+import dev.anuradha.couponservice.service.CouponPage;
 import dev.anuradha.couponservice.service.CouponService;
 import org.junit.jupiter.api.Test;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.doAnswer;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,8 +25,13 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+import java.util.function.Consumer;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -33,6 +46,9 @@ class CouponControllerTest {
     @MockBean
     private CouponService couponService;
 
+    @MockBean
+    private CouponImportService couponImportService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -43,7 +59,7 @@ class CouponControllerTest {
     void createCoupon_returnsCreated() throws Exception {
         CouponRequestDto req = new CouponRequestDto("CART10", CouponType.CART,
                 "{\"threshold\":100,\"discountType\":\"PERCENT\",\"discountValue\":10}",
-                true, null);
+                true, null, null, null, null);
 
         // Use mapper to create the entity the controller would create
         Coupon entityFromReq = couponMapper.toEntity(req);
@@ -60,4 +76,42 @@ class CouponControllerTest {
                 .andExpect(jsonPath("$.id").value("id-1"));
     }
 
-}
\ No newline at end of file
+    @Test
+    void listCoupons_returnsPageWithCursor() throws Exception {
+        Coupon coupon = couponMapper.toEntity(new CouponRequestDto("CART10", CouponType.CART,
+                "{\"threshold\":100,\"discountType\":\"PERCENT\",\"discountValue\":10}", true, null, null, null, null));
+        coupon.setId("id-1");
+
+        when(couponService.listPage(nullable(String.class), eq(1))).thenReturn(new CouponPage(List.of(coupon), "next"));
+
+        mockMvc.perform(get("/api/coupons").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value("id-1"))
+                .andExpect(jsonPath("$.next_cursor").value("next"));
+    }
+
+    @Test
+    void streamCoupons_writesNdjsonWithItsOwnTimeout() throws Exception {
+        Coupon coupon = couponMapper.toEntity(new CouponRequestDto("CART10", CouponType.CART,
+                "{\"threshold\":100,\"discountType\":\"PERCENT\",\"discountValue\":10}", true, null, null, null, null));
+        coupon.setId("id-1");
+
+        doAnswer(invocation -> {
+            Consumer<Coupon> action = invocation.getArgument(0);
+            action.accept(coupon);
+            return null;
+        }).when(couponService).forEachCoupon(any());
+
+        MvcResult started = mockMvc.perform(get("/api/coupons").accept("application/x-ndjson"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertEquals(3_600_000L, started.getRequest().getAsyncContext().getTimeout());
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(content().string(containsString("\"id\":\"id-1\"")))
+                .andExpect(content().string(endsWith("\n")));
+    }
+
+}
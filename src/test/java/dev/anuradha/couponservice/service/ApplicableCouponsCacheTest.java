@@ -0,0 +1,116 @@
+package dev.anuradha.couponservice.service;
+
+import dev.anuradha.couponservice.dto.ApplicableCouponDto;
+import dev.anuradha.couponservice.dto.CartDto;
+import dev.anuradha.couponservice.dto.CartItemDto;
+import dev.anuradha.couponservice.model.CouponType;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ApplicableCouponsCacheTest {
+
+    private static final List<ApplicableCouponDto> RESULT =
+            List.of(new ApplicableCouponDto("id", "PCT10", CouponType.CART, BigDecimal.TEN));
+
+    @Test
+    void testIdenticalInFlightEvaluationsAreCoalesced() throws Exception {
+        ApplicableCouponsCache cache = new ApplicableCouponsCache(0, 0, 5_000);
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger evaluations = new AtomicInteger();
+        List<List<ApplicableCouponDto>> results = new CopyOnWriteArrayList<>();
+
+        Thread leader = new Thread(() -> results.add(cache.coalesce(1, "1x1@10;", () -> {
+            evaluations.incrementAndGet();
+            leaderStarted.countDown();
+            await(release);
+            return RESULT;
+        })));
+        leader.start();
+        assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+
+        List<Thread> followers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Thread follower = new Thread(() -> results.add(cache.coalesce(1, "1x1@10;", () -> {
+                evaluations.incrementAndGet();
+                return RESULT;
+            })));
+            follower.start();
+            followers.add(follower);
+        }
+        // release the leader only once every follower is parked on its future
+        for (Thread follower : followers) {
+            while (follower.getState() != Thread.State.TIMED_WAITING) Thread.onSpinWait();
+        }
+        release.countDown();
+
+        leader.join(5_000);
+        for (Thread follower : followers) follower.join(5_000);
+        assertEquals(4, results.size());
+        results.forEach(result -> assertEquals(RESULT, result));
+        assertEquals(1, evaluations.get());
+        assertEquals(3, cache.coalescedCount());
+    }
+
+    @Test
+    void testWaiterGivesUpAfterBoundAndLeaderFailureIsNotShared() throws Exception {
+        ApplicableCouponsCache cache = new ApplicableCouponsCache(0, 0, 50);
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<ApplicableCouponDto>> leader = pool.submit(() -> cache.coalesce(1, "cart", () -> {
+                leaderStarted.countDown();
+                await(release);
+                throw new IllegalStateException("leader failed");
+            }));
+            assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+
+            // the leader is stuck: after the bound we evaluate ourselves
+            assertEquals(RESULT, cache.coalesce(1, "cart", () -> RESULT));
+            assertEquals(1, cache.coalesceTimeoutCount());
+
+            release.countDown();
+            assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+            // nothing left in flight, so the next caller simply evaluates
+            assertEquals(RESULT, cache.coalesce(1, "cart", () -> RESULT));
+            assertEquals(0, cache.coalescedCount());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void testFingerprintIgnoresLineOrderAcrossProducts() {
+        CartDto a = new CartDto(List.of(
+                new CartItemDto(2L, 1, new BigDecimal("5.00"), null),
+                new CartItemDto(1L, 3, BigDecimal.TEN, null)));
+        CartDto b = new CartDto(List.of(
+                new CartItemDto(1L, 3, BigDecimal.TEN, null),
+                new CartItemDto(2L, 1, new BigDecimal("5.00"), null)));
+
+        assertEquals(ApplicableCouponsCache.fingerprint(a), ApplicableCouponsCache.fingerprint(b));
+        assertNull(ApplicableCouponsCache.fingerprint(new CartDto(List.of(new CartItemDto(1L, 1, null, null)))));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
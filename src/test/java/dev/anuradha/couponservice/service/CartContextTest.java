@@ -0,0 +1,50 @@
+package dev.anuradha.couponservice.service;
+
+import dev.anuradha.couponservice.dto.CartDto;
+import dev.anuradha.couponservice.dto.CartItemDto;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CartContextTest {
+
+    @Test
+    void testAggregatesByProductKeepFirstLineAndOrder() {
+        CartItemDto first = new CartItemDto(1_000_003L, 2, new BigDecimal("10.50"), null);
+        CartDto cart = new CartDto(List.of(
+                first,
+                new CartItemDto(7L, 1, BigDecimal.ONE, null),
+                new CartItemDto(1_000_003L, 3, new BigDecimal("9.99"), null)));
+        CartContext context = CartContext.of(cart, MoneyMode.FIXED_POINT);
+
+        assertEquals(List.of(1_000_003L, 7L), new ArrayList<>(context.productIds()));
+        assertEquals(5, context.quantityOf(1_000_003L));
+        assertEquals(new BigDecimal("10.50"), context.priceOf(1_000_003L));
+        assertEquals(10_500_000L, context.priceMicrosOf(1_000_003L));
+        assertSame(first, context.itemOf(1_000_003L));
+
+        assertEquals(0, context.quantityOf(8L));
+        assertEquals(BigDecimal.ZERO, context.priceOf(8L));
+        assertNull(context.itemOf(8L));
+    }
+
+    @Test
+    void testManyProductsWithCollidingHashes() {
+        List<CartItemDto> items = new ArrayList<>();
+        for (long i = 0; i < 500; i++) {
+            // multiples of a power of two, to crowd the low bits
+            items.add(new CartItemDto(i << 20, (int) i + 1, BigDecimal.ONE, null));
+        }
+        CartContext context = CartContext.of(new CartDto(items));
+
+        assertEquals(500, context.productIds().size());
+        for (long i = 0; i < 500; i++) {
+            assertEquals(i + 1, context.quantityOf(i << 20));
+        }
+        assertEquals(0, context.quantityOf(3L << 20 | 1));
+    }
+}
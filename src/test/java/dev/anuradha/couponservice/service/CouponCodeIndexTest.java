@@ -0,0 +1,78 @@
+package dev.anuradha.couponservice.service;
+
+import dev.anuradha.couponservice.model.Coupon;
+import dev.anuradha.couponservice.repositories.CouponRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CouponCodeIndexTest {
+
+    private CouponRepository repo;
+    private CouponCodeIndex index;
+    private final List<String> codes = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        repo = mock(CouponRepository.class);
+        for (int i = 0; i < 5_000; i++) codes.add("CODE-" + i);
+        when(repo.count()).thenReturn((long) codes.size());
+        when(repo.streamAllCodes()).thenAnswer(inv -> codes.stream());
+        when(repo.findByCode(anyString())).thenReturn(Optional.empty());
+
+        index = new CouponCodeIndex(repo, mock(PlatformTransactionManager.class), 1_000);
+        index.rebuild();
+    }
+
+    @Test
+    void testUnknownCodesRarelyReachTheDatabase() {
+        for (int i = 0; i < 20_000; i++) {
+            assertTrue(index.resolve("GUESS-" + i).isEmpty());
+        }
+
+        assertEquals(20_000, index.rejectedCount() + index.falsePositiveCount());
+        // sized for twice the codes at 1%, so half full: well under 1%
+        assertTrue(index.observedFalsePositiveRate() < 0.01, "observed " + index.observedFalsePositiveRate());
+        assertTrue(index.expectedFalsePositiveRate() < 0.01);
+        verify(repo, times((int) index.falsePositiveCount())).findByCode(anyString());
+        // ~9.6 bits per element at 1%, for 10,000 elements
+        assertTrue(index.filterMemoryBytes() < 16 * 1024);
+    }
+
+    @Test
+    void testKnownCodesAreMappedAndStaleMappingsDropped() {
+        Coupon coupon = new Coupon();
+        coupon.setCode("CODE-7");
+        when(repo.findByCode("CODE-7")).thenReturn(Optional.of(coupon));
+        when(repo.findById(coupon.getId())).thenReturn(Optional.of(coupon));
+
+        assertSame(coupon, index.resolve("CODE-7").orElseThrow());
+        assertSame(coupon, index.resolve("CODE-7").orElseThrow());
+        verify(repo, times(1)).findByCode("CODE-7");
+
+        // renamed elsewhere: the mapping no longer holds and the code is looked up again
+        coupon.setCode("RENAMED");
+        when(repo.findByCode("CODE-7")).thenReturn(Optional.empty());
+        assertTrue(index.resolve("CODE-7").isEmpty());
+        verify(repo, times(2)).findByCode("CODE-7");
+
+        // a code created after the build gets through once added
+        Coupon created = new Coupon();
+        created.setCode("FRESH");
+        when(repo.findByCode("FRESH")).thenReturn(Optional.of(created));
+        index.add("FRESH");
+        assertSame(created, index.resolve("FRESH").orElseThrow());
+        assertEquals(3, index.foundCount());
+    }
+}
@@ -0,0 +1,69 @@
+package dev.anuradha.couponservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.anuradha.couponservice.exception.BadRequestException;
+import dev.anuradha.couponservice.model.CouponType;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CouponImportReaderTest {
+
+    @Test
+    void testNdjsonReportsBadLinesAndKeepsGoing() {
+        String body = """
+                {"code":"A","type":"CART","details":{"threshold":100,"discountType":"PERCENT","discountValue":10}}
+                not json
+
+                {"code":"B","type":"NOPE","details":"{}"}
+                {"code":"C","type":"product","details":"{\\"productId\\":1}","active":false}
+                """;
+        List<CouponImportReader.Line> lines = read(CouponImportReader.ndjson(reader(body), new ObjectMapper()));
+
+        assertEquals(4, lines.size());
+        assertEquals("A", lines.get(0).coupon().getCode());
+        assertTrue(lines.get(0).coupon().isActive());
+        assertEquals("{\"threshold\":100,\"discountType\":\"PERCENT\",\"discountValue\":10}", lines.get(0).coupon().getDetails());
+        assertEquals(2, lines.get(1).number());
+        assertEquals("invalid JSON", lines.get(1).error());
+        assertEquals(4, lines.get(2).number());
+        assertNotNull(lines.get(2).error());
+        assertEquals(CouponType.PRODUCT, lines.get(3).coupon().getType());
+        assertFalse(lines.get(3).coupon().isActive());
+    }
+
+    @Test
+    void testCsvQuotedDetailsAndHeader() {
+        String body = """
+                type,code,details,expiresAt
+                CART,SAVE10,"{""threshold"":100,""discountType"":""FLAT"",""discountValue"":5}",2030-01-01T00:00:00Z
+                BXGY,BAD,"{unterminated
+                """;
+        List<CouponImportReader.Line> lines = read(CouponImportReader.csv(reader(body)));
+
+        assertEquals(2, lines.size());
+        assertEquals("SAVE10", lines.get(0).coupon().getCode());
+        assertEquals("{\"threshold\":100,\"discountType\":\"FLAT\",\"discountValue\":5}", lines.get(0).coupon().getDetails());
+        assertNotNull(lines.get(0).coupon().getExpiresAt());
+        assertEquals(3, lines.get(1).number());
+        assertEquals("unterminated quoted field", lines.get(1).error());
+
+        assertThrows(BadRequestException.class,
+                () -> read(CouponImportReader.csv(reader("code,details\nA,{}\n"))));
+    }
+
+    private static BufferedReader reader(String body) {
+        return new BufferedReader(new StringReader(body));
+    }
+
+    private static List<CouponImportReader.Line> read(CouponImportReader reader) {
+        List<CouponImportReader.Line> lines = new ArrayList<>();
+        reader.forEachRemaining(lines::add);
+        return lines;
+    }
+}
@@ -1,38 +1,82 @@
 package dev.anuradha.couponservice.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.anuradha.couponservice.catalog.CatalogSnapshot;
+import dev.anuradha.couponservice.catalog.CompiledCoupon;
+import dev.anuradha.couponservice.catalog.CouponCatalog;
 import dev.anuradha.couponservice.dto.*;
+import dev.anuradha.couponservice.exception.BadRequestException;
 import dev.anuradha.couponservice.model.Coupon;
+import dev.anuradha.couponservice.model.CouponTarget;
 import dev.anuradha.couponservice.model.CouponType;
 import dev.anuradha.couponservice.repositories.CouponRepository;
+import dev.anuradha.couponservice.repositories.CouponTargetRepository;
+import dev.anuradha.couponservice.rule.CartRule;
+import dev.anuradha.couponservice.rule.RuleCache;
+import dev.anuradha.couponservice.rule.RuleCompiler;
+import dev.anuradha.couponservice.metrics.CouponMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 class CouponServiceTest {
 
     private CouponRepository repo;
+    private CouponTargetRepository targetRepo;
     private CouponService service;
     private ObjectMapper objectMapper;
+    private CouponCatalog catalog;
+    private SimpleMeterRegistry registry;
 
     @BeforeEach
     void setUp(){
         objectMapper = new ObjectMapper();
 
         repo = mock(CouponRepository.class);
+        targetRepo = mock(CouponTargetRepository.class);
 
         Map<CouponType, Evaluator> evaluatorMap = new EnumMap<>(CouponType.class);
-        evaluatorMap.put(CouponType.CART, new CartWiseEvaluator(objectMapper));
-        evaluatorMap.put(CouponType.PRODUCT, new ProductWiseEvaluator(objectMapper));
-        evaluatorMap.put(CouponType.BXGY, new BxGyEvaluator(objectMapper));
+        evaluatorMap.put(CouponType.CART, new CartWiseEvaluator());
+        evaluatorMap.put(CouponType.PRODUCT, new ProductWiseEvaluator());
+        evaluatorMap.put(CouponType.BXGY, new BxGyEvaluator());
 
-        service = new CouponService(evaluatorMap, repo, objectMapper);
+        registry = new SimpleMeterRegistry();
+        CouponMetrics metrics = new CouponMetrics(registry);
+        RuleCompiler ruleCompiler = new RuleCompiler(objectMapper);
+        RuleCache ruleCache = new RuleCache(ruleCompiler, metrics);
+        catalog = new CouponCatalog(repo, ruleCache);
+        service = new CouponService(evaluatorMap, repo, targetRepo, objectMapper, ruleCompiler, ruleCache, catalog,
+                ForkJoinPool.commonPool(), metrics, new ApplicableCouponsCache(100, 60_000, 1_000),
+                mock(CouponChangeLog.class), mock(CouponCodeIndex.class));
     }
 
     @Test
@@ -100,4 +144,507 @@ class CouponServiceTest {
         assertEquals(0, discount.compareTo(BigDecimal.valueOf(20)));
     }
 
-}
\ No newline at end of file
+    @Test
+    void testUpdatedCouponIsRecompiled() throws Exception {
+        CartDto cart = new CartDto(List.of(
+                new CartItemDto(1L, 2, BigDecimal.valueOf(100), null)
+        ));
+
+        Coupon c = new Coupon();
+        c.setType(CouponType.CART);
+        c.setDetails(objectMapper.writeValueAsString(new CartWiseDetailsDto(
+                BigDecimal.valueOf(100), "PERCENT", BigDecimal.valueOf(10))));
+        c.setVersion(0L);
+        assertEquals(0, service.evaluateDiscountForCoupon(c, cart).compareTo(BigDecimal.valueOf(20)));
+
+        // same id, newer version -> the cached rule must not be served
+        c.setDetails(objectMapper.writeValueAsString(new CartWiseDetailsDto(
+                BigDecimal.valueOf(100), "FLAT", BigDecimal.valueOf(5))));
+        c.setVersion(1L);
+        assertEquals(0, service.evaluateDiscountForCoupon(c, cart).compareTo(BigDecimal.valueOf(5)));
+    }
+
+    @Test
+    void testApplicableCouponsComeFromCatalog() throws Exception {
+        Coupon cart10 = new Coupon();
+        cart10.setCode("CART10");
+        cart10.setType(CouponType.CART);
+        cart10.setDetails(objectMapper.writeValueAsString(new CartWiseDetailsDto(
+                BigDecimal.valueOf(100), "PERCENT", BigDecimal.valueOf(10))));
+
+        Coupon inactive = new Coupon();
+        inactive.setCode("OFF");
+        inactive.setType(CouponType.CART);
+        inactive.setDetails(cart10.getDetails());
+        inactive.setActive(false);
+
+        when(repo.findAll()).thenReturn(List.of(cart10, inactive));
+        catalog.refresh();
+        assertEquals(1, catalog.size());
+
+        CartDto cart = new CartDto(List.of(new CartItemDto(1L, 2, BigDecimal.valueOf(100), null)));
+        List<ApplicableCouponDto> result = service.applicableCouponsForCart(cart);
+        assertEquals(1, result.size());
+        assertEquals(cart10.getId(), result.get(0).couponId());
+        assertEquals("CART10", result.get(0).code());
+        assertEquals(0, result.get(0).discount().compareTo(BigDecimal.valueOf(20)));
+
+        long version = catalog.version();
+        service.delete(cart10.getId());
+        assertTrue(catalog.version() > version);
+        assertTrue(service.applicableCouponsForCart(cart).isEmpty());
+    }
+
+    @Test
+    void testApplicableCouponsOnlyEvaluatesIndexedProducts() throws Exception {
+        Coupon onCartProduct = new Coupon();
+        onCartProduct.setCode("P1");
+        onCartProduct.setType(CouponType.PRODUCT);
+        onCartProduct.setDetails(objectMapper.writeValueAsString(new ProductWiseDetailsDto(
+                1L, "FLAT", BigDecimal.valueOf(5))));
+
+        Coupon otherProduct = new Coupon();
+        otherProduct.setCode("P9");
+        otherProduct.setType(CouponType.PRODUCT);
+        otherProduct.setDetails(objectMapper.writeValueAsString(new ProductWiseDetailsDto(
+                9L, "FLAT", BigDecimal.valueOf(5))));
+
+        Coupon bxgy = new Coupon();
+        bxgy.setCode("B1G1");
+        bxgy.setType(CouponType.BXGY);
+        bxgy.setDetails(objectMapper.writeValueAsString(new BxGyDetailsDto(
+                List.of(new BxGyDetailsDto.BuyProduct(1L, 1)),
+                List.of(new BxGyDetailsDto.GetProduct(2L, 1)), null)));
+
+        when(repo.findAll()).thenReturn(List.of(bxgy, otherProduct, onCartProduct));
+        catalog.refresh();
+
+        CartDto cart = new CartDto(List.of(
+                new CartItemDto(1L, 2, BigDecimal.valueOf(10), null),
+                new CartItemDto(2L, 1, BigDecimal.valueOf(30), null)
+        ));
+        assertArrayEquals(new int[]{0, 2}, catalog.snapshot().candidates(CartContext.of(cart)));
+        assertEquals(List.of(bxgy.getId(), onCartProduct.getId()), ids(service.applicableCouponsForCart(cart)));
+    }
+
+    @Test
+    void testUnusableCartLinesOnlyZeroTheCartCoupons() throws Exception {
+        Coupon onCartProduct = new Coupon();
+        onCartProduct.setCode("P1");
+        onCartProduct.setType(CouponType.PRODUCT);
+        onCartProduct.setDetails(objectMapper.writeValueAsString(new ProductWiseDetailsDto(
+                1L, "FLAT", BigDecimal.valueOf(5))));
+
+        Coupon bxgy = new Coupon();
+        bxgy.setCode("B1G1");
+        bxgy.setType(CouponType.BXGY);
+        bxgy.setDetails(objectMapper.writeValueAsString(new BxGyDetailsDto(
+                List.of(new BxGyDetailsDto.BuyProduct(1L, 1)),
+                List.of(new BxGyDetailsDto.GetProduct(2L, 1)), null)));
+
+        Coupon anyCart = cartCoupon("ANY", 0, "FLAT", 1);
+        when(repo.findAll()).thenReturn(List.of(bxgy, onCartProduct, anyCart));
+        catalog.refresh();
+
+        CartItemDto first = new CartItemDto(1L, 2, BigDecimal.valueOf(10), null);
+        CartItemDto second = new CartItemDto(2L, 1, BigDecimal.valueOf(30), null);
+        CartDto complete = new CartDto(List.of(first, second));
+        assertEquals(List.of(bxgy.getId(), onCartProduct.getId(), anyCart.getId()),
+                ids(service.applicableCouponsForCart(complete)));
+
+        // a line without a price, one without a product and a null line: the total is unknown, the rest still counts
+        CartDto partial = new CartDto(Arrays.asList(first, new CartItemDto(1L, 1, null, null), second,
+                new CartItemDto(null, 1, BigDecimal.TEN, null), null));
+        assertEquals(List.of(bxgy.getId(), onCartProduct.getId()), ids(service.applicableCouponsForCart(partial)));
+        assertEquals(0, service.evaluateDiscountForCoupon(onCartProduct, partial).compareTo(BigDecimal.TEN));
+        assertEquals(0, service.evaluateDiscountForCoupon(anyCart, partial).signum());
+    }
+
+    @Test
+    void testCartCouponsLookedUpByThreshold() throws Exception {
+        Coupon pct10 = cartCoupon("PCT10", 100, "PERCENT", 10);
+        Coupon pct20 = cartCoupon("PCT20", 500, "PERCENT", 20);
+        Coupon pct15 = cartCoupon("PCT15", 150, "PERCENT", 15);
+        Coupon flat30 = cartCoupon("FLAT30", 200, "FLAT", 30);
+        Coupon flat50 = cartCoupon("FLAT50", 1000, "FLAT", 50);
+
+        when(repo.findAll()).thenReturn(List.of(pct10, pct20, pct15, flat30, flat50));
+        catalog.refresh();
+
+        CartDto cart = new CartDto(List.of(new CartItemDto(1L, 2, BigDecimal.valueOf(100), null)));
+        // total 200: PCT10, PCT15 and FLAT30 qualify, reported in catalog order
+        assertArrayEquals(new int[]{0, 2, 3}, catalog.snapshot().candidates(CartContext.of(cart)));
+        assertEquals(List.of(pct10.getId(), pct15.getId(), flat30.getId()), ids(service.applicableCouponsForCart(cart)));
+
+        // a threshold is reached at equality; below every threshold nothing qualifies
+        assertArrayEquals(new int[]{0, 2}, candidates(199));
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4}, candidates(1000));
+        assertArrayEquals(new int[]{}, candidates(99));
+
+        // the best coupon of each group comes from the prefix tables, not a scan
+        assertEquals(pct15.getId(), catalog.snapshot().bestPercentCartCoupon(BigDecimal.valueOf(200)).id());
+        assertEquals(flat30.getId(), catalog.snapshot().bestFlatCartCoupon(BigDecimal.valueOf(200)).id());
+        assertEquals(pct20.getId(), catalog.snapshot().bestPercentCartCoupon(BigDecimal.valueOf(1000)).id());
+        assertNull(catalog.snapshot().bestFlatCartCoupon(BigDecimal.valueOf(199)));
+    }
+
+    private int[] candidates(int total) {
+        CartDto cart = new CartDto(List.of(new CartItemDto(1L, 1, BigDecimal.valueOf(total), null)));
+        return catalog.snapshot().candidates(CartContext.of(cart));
+    }
+
+    private static List<String> ids(List<ApplicableCouponDto> coupons) {
+        return coupons.stream().map(ApplicableCouponDto::couponId).toList();
+    }
+
+    private static List<String> ids(CatalogSnapshot snapshot) {
+        return snapshot.coupons().stream().map(CompiledCoupon::id).toList();
+    }
+
+    private Coupon cartCoupon(String code, long threshold, String discountType, long value) throws Exception {
+        Coupon c = new Coupon();
+        c.setCode(code);
+        c.setType(CouponType.CART);
+        c.setDetails(objectMapper.writeValueAsString(new CartWiseDetailsDto(
+                BigDecimal.valueOf(threshold), discountType, BigDecimal.valueOf(value))));
+        return c;
+    }
+
+    @Test
+    void testReadsAndWritesDoNotWaitForAFullLoad() throws Exception {
+        Instant now = Instant.now();
+        Coupon ending = cartCoupon("ENDING", 100, "FLAT", 5);
+        ending.setExpiresAt(now.plusMillis(200));
+        Coupon old = cartCoupon("OLD", 100, "PERCENT", 10);
+        when(repo.findAll()).thenReturn(List.of(ending, old));
+        catalog.refresh();
+
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(repo.findAll()).thenAnswer(inv -> {
+            reading.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return List.of(ending, old);
+        });
+        CompletableFuture<Void> load = CompletableFuture.runAsync(catalog::refresh);
+        assertTrue(reading.await(10, TimeUnit.SECONDS));
+
+        // the load is stuck reading the table: readers past an expiry and writers still get through
+        assertEquals(List.of(old.getId()), ids(catalog.snapshot(now.plusSeconds(1))));
+        Coupon fresh = cartCoupon("FRESH", 50, "FLAT", 1);
+        catalog.upsert(fresh);
+        catalog.remove(old.getId());
+        assertNotNull(catalog.snapshot().get(fresh.getId()));
+
+        // the rows the load read predate both writes, which are kept
+        release.countDown();
+        load.get(10, TimeUnit.SECONDS);
+        assertNotNull(catalog.snapshot().get(fresh.getId()));
+        assertNull(catalog.snapshot().get(old.getId()));
+    }
+
+    @Test
+    void testBatchIsolatesFailingCarts() throws Exception {
+        Coupon pct10 = cartCoupon("PCT10", 100, "PERCENT", 10);
+        when(repo.findAll()).thenReturn(List.of(pct10));
+        catalog.refresh();
+
+        CartDto good = new CartDto(List.of(new CartItemDto(1L, 2, BigDecimal.valueOf(100), null)));
+        CartDto broken = new CartDto(null);
+        // a line without a price is not an error, it only leaves the CART coupons out
+        CartDto unpriced = new CartDto(List.of(new CartItemDto(1L, 2, null, null)));
+
+        List<BatchCartResultDto> results = service.applicableCouponsForCarts(List.of(good, broken, good, unpriced));
+        assertEquals(4, results.size());
+        assertEquals(0, results.get(0).applicableCoupons().get(0).discount().compareTo(BigDecimal.valueOf(20)));
+        assertNotNull(results.get(1).error());
+        assertEquals(results.get(0).applicableCoupons(), results.get(2).applicableCoupons());
+        assertNull(results.get(3).error());
+        assertTrue(results.get(3).applicableCoupons().isEmpty());
+    }
+
+    @Test
+    void testParallelEvaluationKeepsCatalogOrder() throws Exception {
+        List<Coupon> coupons = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Coupon c = new Coupon();
+            c.setCode("P" + i);
+            c.setType(CouponType.PRODUCT);
+            // every third coupon targets a product that's not in the cart
+            c.setDetails(objectMapper.writeValueAsString(new ProductWiseDetailsDto(
+                    i % 3 == 0 ? 2L : 1L, "FLAT", BigDecimal.valueOf(i + 1))));
+            coupons.add(c);
+        }
+        when(repo.findAll()).thenReturn(coupons);
+        catalog.refresh();
+
+        CartDto cart = new CartDto(List.of(new CartItemDto(1L, 1, BigDecimal.valueOf(1000), null)));
+        List<ApplicableCouponDto> sequential = service.applicableCouponsForCart(cart);
+
+        ReflectionTestUtils.setField(service, "parallelThreshold", 1);
+        ReflectionTestUtils.setField(service, "parallelChunkSize", 8);
+        // new catalog version, so the cart isn't answered from the result cache
+        catalog.refresh();
+        List<ApplicableCouponDto> parallel = service.applicableCouponsForCart(cart);
+
+        assertEquals(200, parallel.size());
+        assertEquals(sequential, parallel);
+    }
+
+    @Test
+    void testEvaluationIsMetered() throws Exception {
+        Coupon pct10 = cartCoupon("PCT10", 100, "PERCENT", 10);
+        Coupon legacy = new Coupon();
+        legacy.setCode("BROKEN");
+        legacy.setType(CouponType.CART);
+        legacy.setDetails("{not json");
+        when(repo.findAll()).thenReturn(List.of(pct10, legacy));
+        catalog.refresh();
+
+        // the broken row is counted and left out of the catalog
+        assertEquals(1.0, registry.get("coupon.details.parse.failures").counter().count());
+        assertEquals(1, catalog.size());
+
+        CartDto cart = new CartDto(List.of(new CartItemDto(1L, 2, BigDecimal.valueOf(100), null)));
+        service.applicableCouponsForCart(cart);
+
+        assertEquals(1, registry.get("coupon.evaluator").tags("type", "CART", "method", "evaluate").timer().count());
+        assertEquals(1, registry.get("coupon.applicable.matched").summary().count());
+        assertEquals(0.0, registry.get("coupon.evaluator.errors").tags("type", "CART", "method", "evaluate")
+                .counter().count());
+    }
+
+    @Test
+    void testListPageContinuesAfterCursor() throws Exception {
+        Coupon first = cartCoupon("A", 100, "PERCENT", 10);
+        Coupon second = cartCoupon("B", 100, "PERCENT", 10);
+        Coupon third = cartCoupon("C", 100, "PERCENT", 10);
+        first.setCreatedAt(Instant.parse("2025-01-01T00:00:00Z"));
+        second.setCreatedAt(Instant.parse("2025-01-02T00:00:00Z"));
+        third.setCreatedAt(Instant.parse("2025-01-03T00:00:00Z"));
+
+        when(repo.findFirstPage(PageRequest.of(0, 3))).thenReturn(List.of(first, second, third));
+        CouponPage page = service.listPage(null, 2);
+        assertEquals(List.of(first, second), page.coupons());
+        assertNotNull(page.nextCursor());
+
+        when(repo.findPageAfter(second.getCreatedAt(), second.getId(), PageRequest.of(0, 3)))
+                .thenReturn(List.of(third));
+        CouponPage last = service.listPage(page.nextCursor(), 2);
+        assertEquals(List.of(third), last.coupons());
+        assertNull(last.nextCursor());
+
+        assertThrows(BadRequestException.class, () -> service.listPage("not-a-cursor", 2));
+        assertThrows(BadRequestException.class, () -> service.listPage(null, 0));
+    }
+
+    @Test
+    void testRepeatedCartIsServedFromCacheUntilCatalogChanges() throws Exception {
+        Coupon pct10 = cartCoupon("PCT10", 100, "PERCENT", 10);
+        when(repo.findAll()).thenReturn(List.of(pct10));
+        catalog.refresh();
+
+        CartDto cart = new CartDto(List.of(
+                new CartItemDto(2L, 1, BigDecimal.valueOf(50), null),
+                new CartItemDto(1L, 2, BigDecimal.valueOf(100), null)));
+        CartDto reordered = new CartDto(List.of(
+                new CartItemDto(1L, 2, BigDecimal.valueOf(100), null),
+                new CartItemDto(2L, 1, BigDecimal.valueOf(50), null)));
+
+        List<ApplicableCouponDto> first = service.applicableCouponsForCart(cart);
+        assertEquals(first, service.applicableCouponsForCart(reordered));
+        assertEquals(1, registry.get("coupon.applicable.evaluated").summary().count());
+
+        // a write bumps the catalog version, so the cart is evaluated again
+        Coupon flat50 = cartCoupon("FLAT50", 100, "FLAT", 50);
+        when(repo.findAll()).thenReturn(List.of(pct10, flat50));
+        catalog.refresh();
+        assertEquals(List.of(pct10.getId(), flat50.getId()), ids(service.applicableCouponsForCart(cart)));
+        assertEquals(2, registry.get("coupon.applicable.evaluated").summary().count());
+    }
+
+    @Test
+    void testScheduledCouponGoesLiveAndExpiredOneLeavesTheCatalog() throws Exception {
+        Instant now = Instant.now();
+        Coupon launch = cartCoupon("LAUNCH", 100, "PERCENT", 10);
+        launch.setStartsAt(now.plusSeconds(3600));
+        Coupon ending = cartCoupon("ENDING", 100, "FLAT", 5);
+        ending.setExpiresAt(now.plusSeconds(7200));
+        when(repo.findAll()).thenReturn(List.of(launch, ending));
+        catalog.refresh();
+
+        assertEquals(1, catalog.size());
+        assertEquals(1, catalog.scheduledCount());
+        assertSame(catalog.snapshot(), catalog.snapshot(now.plusSeconds(60)));
+
+        // readers don't apply the start; the catalog does when it advances
+        assertEquals(List.of(ending.getId()), ids(catalog.snapshot(now.plusSeconds(3601))));
+        catalog.advance(now.plusSeconds(3601));
+        CatalogSnapshot launched = catalog.snapshot(now.plusSeconds(3601));
+        assertEquals(List.of(ending.getId(), launch.getId()), ids(launched));
+        assertEquals(0, catalog.scheduledCount());
+
+        // readers do leave out an expired coupon before the catalog has advanced, without publishing
+        long version = catalog.version();
+        CatalogSnapshot afterExpiry = catalog.snapshot(now.plusSeconds(7201));
+        assertEquals(List.of(launch.getId()), ids(afterExpiry));
+        assertFalse(afterExpiry.isPublished());
+        assertSame(afterExpiry, catalog.snapshot(now.plusSeconds(7202)));
+        assertEquals(version, catalog.version());
+
+        // the expired coupon is marked inactive in the database on the next tick
+        catalog.advance(now.plusSeconds(7201));
+        assertEquals(List.of(launch.getId()), ids(catalog.snapshot()));
+        catalog.tick();
+        verify(repo).deactivateExpired(eq(List.of(ending.getId())), any(Instant.class));
+    }
+
+    @Test
+    void testColumnarEngineMatchesEvaluators() throws Exception {
+        Random random = new Random(7);
+        List<Coupon> coupons = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Coupon c = new Coupon();
+            c.setCode("C" + i);
+            String discountType = random.nextBoolean() ? "PERCENT" : "FLAT";
+            BigDecimal value = BigDecimal.valueOf(1 + random.nextInt(3_000), 2);
+            switch (i % 3) {
+                case 0 -> {
+                    c.setType(CouponType.CART);
+                    c.setDetails(objectMapper.writeValueAsString(
+                            new CartWiseDetailsDto(BigDecimal.valueOf(random.nextInt(2_000)), discountType, value)));
+                }
+                case 1 -> {
+                    c.setType(CouponType.PRODUCT);
+                    c.setDetails(objectMapper.writeValueAsString(
+                            new ProductWiseDetailsDto((long) (1 + random.nextInt(10)), discountType, value)));
+                }
+                default -> {
+                    c.setType(CouponType.BXGY);
+                    c.setDetails(objectMapper.writeValueAsString(new BxGyDetailsDto(
+                            List.of(new BxGyDetailsDto.BuyProduct((long) (1 + random.nextInt(10)), 1 + random.nextInt(3))),
+                            List.of(new BxGyDetailsDto.GetProduct((long) (1 + random.nextInt(10)), 1)), 2)));
+                }
+            }
+            coupons.add(c);
+        }
+        when(repo.findAll()).thenReturn(coupons);
+        catalog.refresh();
+
+        List<CartDto> carts = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            List<CartItemDto> items = new ArrayList<>();
+            for (int j = 0, n = 1 + random.nextInt(8); j < n; j++) {
+                items.add(new CartItemDto((long) (1 + random.nextInt(10)), 1 + random.nextInt(5),
+                        BigDecimal.valueOf(random.nextInt(100_000), 2), null));
+            }
+            carts.add(new CartDto(items));
+        }
+        List<List<ApplicableCouponDto>> expected = new ArrayList<>();
+        for (CartDto cart : carts) expected.add(service.applicableCouponsForCart(cart));
+
+        ReflectionTestUtils.setField(service, "engine", EvaluationEngine.COLUMNAR);
+        // new catalog version, so nothing is answered from the result cache
+        catalog.refresh();
+        for (int i = 0; i < carts.size(); i++) {
+            assertEquals(expected.get(i), service.applicableCouponsForCart(carts.get(i)));
+        }
+    }
+
+    @Test
+    void testTargetsAreWrittenWithTheCouponAndPruneTheColdPath() throws Exception {
+        when(repo.save(any(Coupon.class))).thenAnswer(inv -> inv.getArgument(0));
+        Coupon bxgy = new Coupon();
+        bxgy.setCode("B2G1");
+        bxgy.setType(CouponType.BXGY);
+        bxgy.setDetails(objectMapper.writeValueAsString(new BxGyDetailsDto(
+                List.of(new BxGyDetailsDto.BuyProduct(1L, 2), new BxGyDetailsDto.BuyProduct(2L, 2)),
+                List.of(new BxGyDetailsDto.GetProduct(1L, 1)), 1)));
+        service.create(bxgy);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<CouponTarget>> targets = ArgumentCaptor.forClass(List.class);
+        verify(targetRepo).saveAll(targets.capture());
+        assertEquals(List.of("1 BUY", "2 BUY", "1 GET"), targets.getValue().stream()
+                .map(t -> t.getProductId() + " " + t.getRole()).toList());
+        assertTrue(targets.getValue().stream().allMatch(t -> t.getCouponId().equals(bxgy.getId())));
+
+        // nothing loaded yet: the database picks the candidates for the cart's products
+        Coupon onProduct = new Coupon();
+        onProduct.setCode("P3");
+        onProduct.setType(CouponType.PRODUCT);
+        onProduct.setDetails(objectMapper.writeValueAsString(
+                new ProductWiseDetailsDto(3L, "FLAT", BigDecimal.valueOf(5))));
+        when(repo.findCandidates(any())).thenReturn(List.of(bxgy, onProduct));
+        CartDto cart = new CartDto(List.of(
+                new CartItemDto(1L, 3, BigDecimal.valueOf(10), null),
+                new CartItemDto(3L, 1, BigDecimal.valueOf(20), null)));
+
+        assertFalse(catalog.isLoaded());
+        List<ApplicableCouponDto> result = service.applicableCouponsForCart(cart);
+        assertTrue(ids(result).contains(onProduct.getId()));
+        verify(repo).findCandidates(Set.of(1L, 3L));
+    }
+
+    @Test
+    void testCatalogStartsFromSnapshotFileAndCatchesUp(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("catalog.bin");
+        Instant loadedAt = Instant.now().minusSeconds(3600);
+        Coupon kept = cartCoupon("KEPT", "PERCENT", 10, loadedAt);
+        Coupon changed = cartCoupon("CHANGED", "FLAT", 5, loadedAt);
+        Coupon deleted = cartCoupon("DELETED", "FLAT", 1, loadedAt);
+        Coupon bxgy = new Coupon();
+        bxgy.setCode("B1G1");
+        bxgy.setType(CouponType.BXGY);
+        bxgy.setUpdatedAt(loadedAt);
+        bxgy.setExpiresAt(Instant.now().plusSeconds(86_400));
+        bxgy.setDetails(objectMapper.writeValueAsString(new BxGyDetailsDto(
+                List.of(new BxGyDetailsDto.BuyProduct(1L, 1)), List.of(new BxGyDetailsDto.GetProduct(2L, 1)), null)));
+        when(repo.findAll()).thenReturn(List.of(kept, changed, deleted, bxgy));
+        ReflectionTestUtils.setField(catalog, "snapshotPath", file.toString());
+        catalog.refresh();
+        assertTrue(Files.size(file) > 0);
+
+        // another node starts after CHANGED was edited, DELETED deleted and NEW created
+        changed.setDetails(objectMapper.writeValueAsString(new CartWiseDetailsDto(BigDecimal.ZERO, "FLAT", BigDecimal.valueOf(7))));
+        changed.setVersion(1L);
+        changed.setUpdatedAt(Instant.now());
+        Coupon created = cartCoupon("NEW", "FLAT", 3, Instant.now());
+        CouponRepository other = mock(CouponRepository.class);
+        when(other.findActiveIds()).thenReturn(List.of(kept.getId(), changed.getId(), bxgy.getId(), created.getId()));
+        when(other.findByUpdatedAtGreaterThanEqual(any())).thenReturn(List.of(changed, created));
+        CouponCatalog restarted = new CouponCatalog(other, new RuleCache(new RuleCompiler(objectMapper),
+                new CouponMetrics(new SimpleMeterRegistry())));
+        ReflectionTestUtils.setField(restarted, "snapshotPath", file.toString());
+        restarted.load();
+
+        verify(other, never()).findAll();
+        assertTrue(restarted.isLoaded());
+        assertEquals(List.of(kept.getId(), changed.getId(), bxgy.getId(), created.getId()),
+                restarted.snapshot().coupons().stream().map(CompiledCoupon::id).toList());
+        assertEquals(catalog.snapshot().get(kept.getId()).rule(), restarted.snapshot().get(kept.getId()).rule());
+        assertEquals(catalog.snapshot().get(bxgy.getId()).rule(), restarted.snapshot().get(bxgy.getId()).rule());
+        assertEquals(bxgy.getExpiresAt(), restarted.snapshot().get(bxgy.getId()).expiresAt());
+        assertEquals(0, BigDecimal.valueOf(7).compareTo(
+                ((CartRule) restarted.snapshot().get(changed.getId()).rule()).discountValue()));
+
+        // a corrupt file is ignored and the catalog loads from the database instead
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(file, bytes);
+        when(other.findAll()).thenReturn(List.of(kept));
+        restarted.load();
+        verify(other, times(1)).findAll();
+        assertEquals(1, restarted.size());
+    }
+
+    private Coupon cartCoupon(String code, String discountType, int value, Instant updatedAt) throws Exception {
+        Coupon c = new Coupon();
+        c.setCode(code);
+        c.setType(CouponType.CART);
+        c.setUpdatedAt(updatedAt);
+        c.setDetails(objectMapper.writeValueAsString(
+                new CartWiseDetailsDto(BigDecimal.ZERO, discountType, BigDecimal.valueOf(value))));
+        return c;
+    }
+}
@@ -0,0 +1,98 @@
+package dev.anuradha.couponservice.service;
+
+import dev.anuradha.couponservice.dto.CartDto;
+import dev.anuradha.couponservice.dto.CartItemDto;
+import dev.anuradha.couponservice.rule.BxGyRule;
+import dev.anuradha.couponservice.rule.CartRule;
+import dev.anuradha.couponservice.rule.CouponRule;
+import dev.anuradha.couponservice.rule.ProductRule;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The fixed-point path must give exactly the BigDecimal result (value and scale) on any cart.
+ */
+class FixedPointEvaluationTest {
+
+    private final Evaluator cartEvaluator = new CartWiseEvaluator();
+    private final Evaluator productEvaluator = new ProductWiseEvaluator();
+    private final Evaluator bxGyEvaluator = new BxGyEvaluator();
+
+    @Test
+    void fixedPointMatchesBigDecimalOnRandomCarts() {
+        Random random = new Random(42);
+        int fixedPointCarts = 0;
+        for (int run = 0; run < 5_000; run++) {
+            CartDto cart = randomCart(random);
+            CartContext big = CartContext.of(cart, MoneyMode.BIG_DECIMAL);
+            CartContext fixed = CartContext.of(cart, MoneyMode.FIXED_POINT);
+            if (fixed.fixedPoint()) fixedPointCarts++;
+
+            for (int i = 0; i < 5; i++) {
+                CouponRule cartRule = new CartRule(money(random, 2000), random.nextBoolean(), percentOrAmount(random));
+                assertEquals(cartEvaluator.evaluate(cartRule, big), cartEvaluator.evaluate(cartRule, fixed));
+
+                CouponRule productRule = new ProductRule(1 + random.nextInt(8), random.nextBoolean(), percentOrAmount(random));
+                assertEquals(productEvaluator.evaluate(productRule, big), productEvaluator.evaluate(productRule, fixed));
+
+                CouponRule bxGyRule = randomBxGy(random);
+                assertEquals(bxGyEvaluator.evaluate(bxGyRule, big), bxGyEvaluator.evaluate(bxGyRule, fixed));
+            }
+        }
+        // most generated carts must actually have exercised the fixed-point path
+        assertTrue(fixedPointCarts > 4_000);
+    }
+
+    @Test
+    void valuesBeyondSixDecimalsFallBackToBigDecimal() {
+        CartDto cart = new CartDto(List.of(new CartItemDto(1L, 3, new BigDecimal("19.1234567"), null)));
+        CartContext fixed = CartContext.of(cart, MoneyMode.FIXED_POINT);
+        assertFalse(fixed.fixedPoint());
+
+        CouponRule rule = new CartRule(BigDecimal.TEN, true, new BigDecimal("12.5"));
+        assertEquals(cartEvaluator.evaluate(rule, CartContext.of(cart)), cartEvaluator.evaluate(rule, fixed));
+    }
+
+    private static CartDto randomCart(Random random) {
+        int lines = 1 + random.nextInt(20);
+        List<CartItemDto> items = new ArrayList<>();
+        for (int i = 0; i < lines; i++) {
+            items.add(new CartItemDto((long) (1 + random.nextInt(8)), 1 + random.nextInt(10), money(random, 500), null));
+        }
+        return new CartDto(items);
+    }
+
+    private static BxGyRule randomBxGy(Random random) {
+        List<BxGyRule.Line> buy = new ArrayList<>();
+        List<BxGyRule.Line> get = new ArrayList<>();
+        for (int i = 0, n = 1 + random.nextInt(3); i < n; i++) {
+            buy.add(new BxGyRule.Line(1 + random.nextInt(8), 1 + random.nextInt(3)));
+        }
+        for (int i = 0, n = 1 + random.nextInt(3); i < n; i++) {
+            get.add(new BxGyRule.Line(1 + random.nextInt(8), 1 + random.nextInt(3)));
+        }
+        return new BxGyRule(buy, get, random.nextBoolean() ? null : 1 + random.nextInt(4));
+    }
+
+    private static BigDecimal percentOrAmount(Random random) {
+        return money(random, 100);
+    }
+
+    // mostly cents, sometimes whole units or up to 6 decimals, occasionally more
+    private static BigDecimal money(Random random, int max) {
+        int scale = switch (random.nextInt(10)) {
+            case 0 -> 0;
+            case 1 -> 3 + random.nextInt(4);
+            case 2 -> random.nextInt(50) == 0 ? 7 : 1;
+            default -> 2;
+        };
+        long unscaled = (long) (random.nextDouble() * max * Math.pow(10, scale));
+        return BigDecimal.valueOf(unscaled, scale);
+    }
+}
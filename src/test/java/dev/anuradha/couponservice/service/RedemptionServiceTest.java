@@ -0,0 +1,177 @@
+package dev.anuradha.couponservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.anuradha.couponservice.catalog.CouponCatalog;
+import dev.anuradha.couponservice.dto.CartWiseDetailsDto;
+import dev.anuradha.couponservice.exception.BadRequestException;
+import dev.anuradha.couponservice.metrics.CouponMetrics;
+import dev.anuradha.couponservice.model.Coupon;
+import dev.anuradha.couponservice.model.CouponType;
+import dev.anuradha.couponservice.repositories.CouponRedemptionRepository;
+import dev.anuradha.couponservice.repositories.CouponRepository;
+import dev.anuradha.couponservice.rule.RuleCache;
+import dev.anuradha.couponservice.rule.RuleCompiler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RedemptionServiceTest {
+
+    private CouponRepository repo;
+    private CouponRedemptionRepository redemptionRepo;
+    private CouponCatalog catalog;
+    private RedemptionService service;
+    private Coupon coupon;
+    private JdbcTemplate jdbcTemplate;
+
+    // stands in for coupons.redemptions_reserved
+    private final AtomicLong reserved = new AtomicLong();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        repo = mock(CouponRepository.class);
+        redemptionRepo = mock(CouponRedemptionRepository.class);
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        RuleCache ruleCache = new RuleCache(new RuleCompiler(objectMapper), new CouponMetrics(new SimpleMeterRegistry()));
+        catalog = new CouponCatalog(repo, ruleCache);
+
+        coupon = new Coupon();
+        coupon.setCode("FLASH");
+        coupon.setType(CouponType.CART);
+        coupon.setDetails(objectMapper.writeValueAsString(
+                new CartWiseDetailsDto(BigDecimal.ZERO, "FLAT", BigDecimal.ONE)));
+        coupon.setMaxRedemptions(250);
+        when(repo.findAll()).thenReturn(List.of(coupon));
+        catalog.refresh();
+
+        // conditional lease like the real update: all or nothing, never above the limit
+        when(repo.leaseRedemptions(eq(coupon.getId()), anyLong())).thenAnswer(inv -> {
+            long n = inv.getArgument(1);
+            long before;
+            do {
+                before = reserved.get();
+                if (before + n > coupon.getMaxRedemptions()) return 0;
+            } while (!reserved.compareAndSet(before, before + n));
+            return 1;
+        });
+        when(repo.redemptionsLeft(coupon.getId()))
+                .thenAnswer(inv -> Optional.of(coupon.getMaxRedemptions() - reserved.get()));
+
+        jdbcTemplate = mock(JdbcTemplate.class);
+        service = new RedemptionService(catalog, repo, redemptionRepo, jdbcTemplate);
+        ReflectionTestUtils.setField(service, "leaseSize", 100);
+    }
+
+    @Test
+    void testGlobalLimitIsNeverExceededUnderContention() throws Exception {
+        AtomicInteger redeemed = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 2_000; i++) {
+            pool.submit(() -> {
+                if (service.redeem(coupon.getId(), null) == RedemptionService.Outcome.REDEEMED) {
+                    redeemed.incrementAndGet();
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(250, redeemed.get());
+        assertEquals(250, reserved.get());
+        assertEquals(RedemptionService.Outcome.LIMIT_REACHED, service.redeem(coupon.getId(), null));
+    }
+
+    @Test
+    void testCustomerLimitGivesTheGlobalUnitBack() {
+        coupon.setMaxRedemptionsPerCustomer(1);
+        catalog.refresh();
+        when(redemptionRepo.incrementBelow(anyString(), eq("alice"), eq(1))).thenReturn(0);
+        when(redemptionRepo.insertFirst(coupon.getId(), "alice")).thenReturn(1);
+
+        assertEquals(RedemptionService.Outcome.REDEEMED, service.redeem(coupon.getId(), "alice"));
+        when(redemptionRepo.insertFirst(coupon.getId(), "alice"))
+                .thenThrow(new DataIntegrityViolationException("duplicate"));
+        assertEquals(RedemptionService.Outcome.CUSTOMER_LIMIT_REACHED, service.redeem(coupon.getId(), "alice"));
+
+        // one lease of 100, one unit used, the refused one returned
+        assertEquals(100, reserved.get());
+        assertThrows(BadRequestException.class, () -> service.redeem(coupon.getId(), " "));
+        assertEquals(RedemptionService.Outcome.NOT_FOUND, service.redeem("missing", "alice"));
+    }
+
+    @Test
+    void testCouponNotInTheCatalogYetIsRedeemedFromItsRow() {
+        Coupon fresh = new Coupon();
+        fresh.setCode("FRESH");
+        fresh.setType(CouponType.CART);
+        when(repo.findById(fresh.getId())).thenReturn(Optional.of(fresh));
+        assertEquals(RedemptionService.Outcome.REDEEMED, service.redeem(fresh.getId(), null));
+
+        fresh.setExpiresAt(Instant.now().minusSeconds(60));
+        fresh.setActive(false);
+        assertEquals(RedemptionService.Outcome.EXPIRED, service.redeem(fresh.getId(), null));
+
+        fresh.setExpiresAt(null);
+        assertEquals(RedemptionService.Outcome.NOT_FOUND, service.redeem(fresh.getId(), null));
+    }
+
+    @Test
+    void testRedemptionRetriesWhenTheFlushTickPrunesItsAllowance() {
+        Coupon fresh = new Coupon();
+        fresh.setCode("FRESH");
+        fresh.setType(CouponType.CART);
+        fresh.setMaxRedemptions(500);
+        when(repo.findById(fresh.getId())).thenReturn(Optional.of(fresh));
+        // the tick runs while the first lease is in flight; the coupon isn't in this node's catalog yet
+        AtomicInteger leases = new AtomicInteger();
+        when(repo.leaseRedemptions(eq(fresh.getId()), anyLong())).thenAnswer(inv -> {
+            if (leases.getAndIncrement() == 0) service.flush();
+            return 1;
+        });
+
+        assertEquals(RedemptionService.Outcome.REDEEMED, service.redeem(fresh.getId(), null));
+        assertEquals(2, leases.get());
+        verify(jdbcTemplate).batchUpdate(eq("update coupons set redemptions_reserved = redemptions_reserved - ? where id = ?"),
+                argThat((List<Object[]> rows) -> rows.size() == 1 && rows.get(0)[0].equals(100L)
+                        && rows.get(0)[1].equals(fresh.getId())));
+    }
+
+    @Test
+    void testAllowanceOfARemovedCouponIsDroppedAndItsLeaseHandedBack() {
+        assertEquals(RedemptionService.Outcome.REDEEMED, service.redeem(coupon.getId(), null));
+        service.flush();
+        Map<?, ?> allowances = (Map<?, ?>) ReflectionTestUtils.getField(service, "allowances");
+        assertEquals(1, allowances.size());
+
+        catalog.remove(coupon.getId());
+        service.flush();
+        assertTrue(allowances.isEmpty());
+        verify(jdbcTemplate).batchUpdate(eq("update coupons set redemptions_reserved = redemptions_reserved - ? where id = ?"),
+                argThat((List<Object[]> rows) -> rows.size() == 1 && rows.get(0)[0].equals(99L)
+                        && rows.get(0)[1].equals(coupon.getId())));
+    }
+}